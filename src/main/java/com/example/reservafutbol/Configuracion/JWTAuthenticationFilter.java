@@ -1,11 +1,13 @@
 package com.example.reservafutbol.Configuracion;
 
+import com.example.reservafutbol.Servicio.EstadoUsuariosCache;
 import com.example.reservafutbol.Servicio.UsuarioServicio;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -15,16 +17,25 @@ import org.slf4j.LoggerFactory;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.stream.Collectors;
 
 public class JWTAuthenticationFilter extends OncePerRequestFilter {
 
     private static final Logger log = LoggerFactory.getLogger(JWTAuthenticationFilter.class);
     private final JWTUtil jwtUtil;
     private final UsuarioServicio userDetailsService; // UsuarioServicio es tu UserDetailsService
+    private final EstadoUsuariosCache estadoUsuarios;
+    // true: el principal se arma con los claims del token y solo se consulta el estado cacheado del usuario.
+    // false: se carga el usuario completo de la base en cada request (comportamiento anterior).
+    private final boolean sinEstado;
 
-    public JWTAuthenticationFilter(JWTUtil jwtUtil, UsuarioServicio userDetailsService) {
+    public JWTAuthenticationFilter(JWTUtil jwtUtil, UsuarioServicio userDetailsService,
+                                   EstadoUsuariosCache estadoUsuarios, boolean sinEstado) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.estadoUsuarios = estadoUsuarios;
+        this.sinEstado = sinEstado;
     }
 
     @Override
@@ -33,25 +44,18 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = parseJwt(request);
 
-            if (jwt != null && jwtUtil.validateJwtToken(jwt)) {
-                String username = jwtUtil.getUserNameFromJwtToken(jwt);
+            // Firma y claims se verifican una sola vez por request.
+            TokenJwtVerificado token = jwt != null ? jwtUtil.verificar(jwt) : null;
+            if (token != null) {
+                String username = token.username();
 
                 if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    // Carga los detalles completos del usuario desde la base de datos
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-                    // Si userDetails no es null (es decir, el usuario existe en la DB)
-                    if (userDetails != null) {
-                        UsernamePasswordAuthenticationToken authentication =
-                                new UsernamePasswordAuthenticationToken(
-                                        userDetails,
-                                        null, // Credenciales (null para JWT después de la validación)
-                                        userDetails.getAuthorities()); // Autoridades/Roles del usuario
-
+                    UsernamePasswordAuthenticationToken authentication = sinEstado
+                            ? autenticacionDesdeClaims(token)
+                            : autenticacionDesdeBase(username);
+                    if (authentication != null) {
                         authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                         SecurityContextHolder.getContext().setAuthentication(authentication);
-                    } else {
-                        log.warn("Usuario {} no encontrado en la base de datos después de la validación del JWT.", username);
                     }
                 }
             }
@@ -62,6 +66,38 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    // Usa los claims verificados y el estado cacheado del usuario para detectar cuentas borradas o deshabilitadas.
+    // Si los roles cambiaron después de emitir el token (updateUserRoles), valen los de la base.
+    private UsernamePasswordAuthenticationToken autenticacionDesdeClaims(TokenJwtVerificado token) {
+        String username = token.username();
+        EstadoUsuariosCache.EstadoUsuario estado = estadoUsuarios.obtener(username);
+        if (!estado.existe() || !estado.habilitado()) {
+            log.warn("Token JWT rechazado: el usuario {} no existe o está deshabilitado.", username);
+            return null;
+        }
+        if (!estado.roles().equals(new HashSet<>(token.roles()))) {
+            log.debug("Los roles del token de {} ({}) no coinciden con los vigentes ({}). Se usan los vigentes.",
+                    username, token.roles(), estado.roles());
+        }
+        UsuarioToken principal = new UsuarioToken(username, token.nombreCompleto());
+        return new UsernamePasswordAuthenticationToken(principal, null, estado.roles().stream()
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList()));
+    }
+
+    private UsernamePasswordAuthenticationToken autenticacionDesdeBase(String username) {
+        // Carga los detalles completos del usuario desde la base de datos
+        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if (userDetails == null) {
+            log.warn("Usuario {} no encontrado en la base de datos después de la validación del JWT.", username);
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null, // Credenciales (null para JWT después de la validación)
+                userDetails.getAuthorities()); // Autoridades/Roles del usuario
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
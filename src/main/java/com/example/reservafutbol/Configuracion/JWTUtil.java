@@ -4,6 +4,13 @@ import com.example.reservafutbol.Modelo.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -13,8 +20,13 @@ import org.slf4j.LoggerFactory;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -29,8 +41,53 @@ public class JWTUtil {
     @Value("${jwt.expiration.ms}")
     private int jwtExpirationMs;
 
+    // Tokens ya verificados que se recuerdan hasta su expiración (0 desactiva la cache).
+    @Value("${jwt.cache-verificados.max-entradas:10000}")
+    private long maxTokensVerificados;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    // La clave y el parser se arman una sola vez: JwtParser es inmutable y se puede compartir entre hilos.
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    // Clave: SHA-256 del token, para no retener tokens completos en memoria.
+    private Cache<String, TokenJwtVerificado> tokensVerificados;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser().verifyWith(signingKey).build();
+        if (maxTokensVerificados > 0) {
+            tokensVerificados = Caffeine.newBuilder()
+                    .maximumSize(maxTokensVerificados)
+                    .expireAfter(new Expiry<String, TokenJwtVerificado>() {
+                        @Override
+                        public long expireAfterCreate(String hash, TokenJwtVerificado token, long ahora) {
+                            return hastaExpirar(token).toNanos();
+                        }
+
+                        @Override
+                        public long expireAfterUpdate(String hash, TokenJwtVerificado token, long ahora, long restante) {
+                            return restante;
+                        }
+
+                        @Override
+                        public long expireAfterRead(String hash, TokenJwtVerificado token, long ahora, long restante) {
+                            return restante;
+                        }
+                    })
+                    .recordStats()
+                    .build();
+            if (meterRegistry != null) {
+                CaffeineCacheMetrics.monitor(meterRegistry, tokensVerificados, "jwt.verificados");
+            }
+        }
+    }
+
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        return signingKey;
     }
 
     public String generateJwtToken(Authentication authentication) {
@@ -88,11 +145,39 @@ public class JWTUtil {
         return null;
     }
 
+    public List<String> getRolesFromJwtToken(String token) {
+        return roles(parseClaims(token));
+    }
+
     public String getNombreCompletoFromJwtToken(String token) {
         Claims claims = parseClaims(token);
         return claims.get("nombreCompleto", String.class);
     }
 
+    // Verifica firma y expiración y devuelve los claims ya leídos; null si el token no es válido.
+    // Un mismo token se verifica una sola vez: después se responde desde la cache hasta que expira.
+    public TokenJwtVerificado verificar(String authToken) {
+        if (tokensVerificados == null || authToken == null) {
+            return verificarFirma(authToken);
+        }
+        // Los tokens inválidos no se guardan (el loader devuelve null), así que se rechazan siempre verificando.
+        return tokensVerificados.get(hash(authToken), clave -> verificarFirma(authToken));
+    }
+
+    private TokenJwtVerificado verificarFirma(String authToken) {
+        try {
+            Claims claims = parseClaims(authToken);
+            return new TokenJwtVerificado(
+                    claims.getSubject(),
+                    claims.get("nombreCompleto", String.class),
+                    List.copyOf(roles(claims)),
+                    claims.getExpiration() != null ? claims.getExpiration().toInstant() : null);
+        } catch (JwtException | IllegalArgumentException e) {
+            registrarTokenInvalido(e);
+            return null;
+        }
+    }
+
     public boolean validateJwtToken(String authToken) {
         try {
             parseClaims(authToken);
@@ -111,11 +196,43 @@ public class JWTUtil {
         return false;
     }
 
+    private static void registrarTokenInvalido(Exception e) {
+        if (e instanceof ExpiredJwtException) {
+            log.error("Token JWT expirado: {}", e.getMessage());
+        } else if (e instanceof SignatureException) {
+            log.error("Firma JWT inválida: {}", e.getMessage());
+        } else if (e instanceof IllegalArgumentException) {
+            log.error("Cadena de claims JWT vacía: {}", e.getMessage());
+        } else {
+            log.error("Token JWT inválido: {}", e.getMessage());
+        }
+    }
+
+    private static Duration hastaExpirar(TokenJwtVerificado token) {
+        if (token.expiracion() == null) {
+            return Duration.ZERO;
+        }
+        Duration restante = Duration.between(Instant.now(), token.expiracion());
+        return restante.isNegative() ? Duration.ZERO : restante;
+    }
+
+    private static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible.", e);
+        }
+    }
+
+    private static List<String> roles(Claims claims) {
+        List<?> roles = claims.get("roles", List.class);
+        if (roles == null) {
+            return Collections.emptyList();
+        }
+        return roles.stream().map(String::valueOf).collect(Collectors.toList());
+    }
+
     private Claims parseClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.example.reservafutbol.Configuracion;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+// Copia los atributos por tipo de cancha desde las cinco tablas anteriores (complejo_cancha_counts, _prices,
+// _surfaces, _iluminacion, _techo) a complejo_tipos_cancha. Corre al arrancar, después de que Hibernate
+// actualiza el esquema, y solo si la tabla nueva está vacía y existen las anteriores.
+// Copiados los datos, las tablas anteriores se borran en la misma transacción: sus FK a complejos impedirían
+// eliminar los complejos migrados. Si la tabla nueva ya tiene datos (migrada en un arranque anterior), solo se borran.
+@Component
+@DependsOn("entityManagerFactory")
+public class MigracionTiposCancha {
+
+    private static final Logger log = LoggerFactory.getLogger(MigracionTiposCancha.class);
+
+    private static final List<String> TABLAS_ANTERIORES = List.of(
+            "complejo_cancha_counts", "complejo_cancha_prices", "complejo_cancha_surfaces",
+            "complejo_cancha_iluminacion", "complejo_cancha_techo");
+
+    private static final String MIGRAR = """
+            INSERT INTO complejo_tipos_cancha (complejo_id, tipo_cancha, cantidad, precio_por_hora, superficie, iluminacion, techo)
+            SELECT t.complejo_id, t.tipo_cancha, c.cantidad, p.precio_por_hora, s.superficie, i.iluminacion, te.techo
+            FROM (SELECT complejo_id, tipo_cancha FROM complejo_cancha_counts
+                  UNION SELECT complejo_id, tipo_cancha FROM complejo_cancha_prices
+                  UNION SELECT complejo_id, tipo_cancha FROM complejo_cancha_surfaces
+                  UNION SELECT complejo_id, tipo_cancha FROM complejo_cancha_iluminacion
+                  UNION SELECT complejo_id, tipo_cancha FROM complejo_cancha_techo) t
+            LEFT JOIN complejo_cancha_counts c ON c.complejo_id = t.complejo_id AND c.tipo_cancha = t.tipo_cancha
+            LEFT JOIN complejo_cancha_prices p ON p.complejo_id = t.complejo_id AND p.tipo_cancha = t.tipo_cancha
+            LEFT JOIN complejo_cancha_surfaces s ON s.complejo_id = t.complejo_id AND s.tipo_cancha = t.tipo_cancha
+            LEFT JOIN complejo_cancha_iluminacion i ON i.complejo_id = t.complejo_id AND i.tipo_cancha = t.tipo_cancha
+            LEFT JOIN complejo_cancha_techo te ON te.complejo_id = t.complejo_id AND te.tipo_cancha = t.tipo_cancha
+            WHERE t.tipo_cancha IS NOT NULL
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PostConstruct
+    public void migrar() {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                List<String> existentes = TABLAS_ANTERIORES.stream()
+                        .filter(tabla -> jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, tabla) == Boolean.TRUE)
+                        .toList();
+                if (existentes.isEmpty()) {
+                    return;
+                }
+                Integer migradas = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM complejo_tipos_cancha", Integer.class);
+                if (migradas == null || migradas == 0) {
+                    if (existentes.size() < TABLAS_ANTERIORES.size()) {
+                        log.warn("Migración de tipos de cancha pendiente: faltan tablas anteriores (existen {}). No se copia ni se borra nada.", existentes);
+                        return;
+                    }
+                    int filas = jdbcTemplate.update(MIGRAR);
+                    log.info("Migración de tipos de cancha: {} filas copiadas a complejo_tipos_cancha.", filas);
+                }
+                for (String tabla : existentes) {
+                    jdbcTemplate.execute("DROP TABLE " + tabla);
+                }
+                log.info("Migración de tipos de cancha: tablas anteriores eliminadas {}.", existentes);
+            });
+        } catch (Exception e) {
+            // No se impide el arranque: los complejos quedarían sin tipos de cancha hasta reintentar.
+            log.error("Error migrando los tipos de cancha a complejo_tipos_cancha: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.example.reservafutbol.Configuracion;
 
 import com.example.reservafutbol.Modelo.ERole;
 import com.example.reservafutbol.Modelo.User;
+import com.example.reservafutbol.Servicio.EstadoUsuariosCache;
+import com.example.reservafutbol.Servicio.RefreshTokenServicio;
 import com.example.reservafutbol.Servicio.UsuarioServicio;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
@@ -51,21 +53,31 @@ public class SecurityConfig {
     @Autowired
     private UsuarioServicio usuarioServicio;
 
+    private EstadoUsuariosCache estadoUsuarios;
+
+    @Autowired
+    private RefreshTokenServicio refreshTokenServicio;
+
+    // Arma la autenticación con los claims del JWT en vez de cargar el usuario de la base en cada request.
+    @Value("${jwt.autenticacion.sin-estado:true}")
+    private boolean jwtSinEstado;
+
     @Value("${frontend.url}")
     private String frontendUrl;
 
     @Value("${BACKEND_URL}")
     private String backendUrlBase;
 
-    public SecurityConfig(JWTUtil jwtUtil, UsuarioServicio usuarioServicio) {
+    public SecurityConfig(JWTUtil jwtUtil, UsuarioServicio usuarioServicio, EstadoUsuariosCache estadoUsuarios) {
         this.jwtUtil = jwtUtil;
         this.usuarioServicio = usuarioServicio;
+        this.estadoUsuarios = estadoUsuarios;
         log.info("SecurityConfig initialized with JWTUtil and UsuarioServicio.");
     }
 
     @Bean
     public JWTAuthenticationFilter authenticationJwtTokenFilter() {
-        return new JWTAuthenticationFilter(jwtUtil, usuarioServicio);
+        return new JWTAuthenticationFilter(jwtUtil, usuarioServicio, estadoUsuarios, jwtSinEstado);
     }
 
     @Bean
@@ -93,9 +105,11 @@ public class SecurityConfig {
                                 "/api/pagos/ipn", "/api/pagos/notificacion",
                                 "/error", "/error-404"
                         ).permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
 
                         .requestMatchers(HttpMethod.GET, "/api/complejos", "/api/complejos/**").permitAll()
-                        .requestMatchers(HttpMethod.GET, "/api/reservas/disponibilidad-por-tipo").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/reservas/disponibilidad-por-tipo", "/api/reservas/disponibilidad-grilla").permitAll()
 
                         .requestMatchers("/api/complejos/mis-complejos").hasAnyRole("ADMIN", "COMPLEX_OWNER")
                         .requestMatchers(HttpMethod.POST, "/api/complejos").hasRole("ADMIN")
@@ -106,6 +120,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/reservas/usuario").authenticated()
 
                         .requestMatchers("/api/reservas/admin/todas").hasAnyRole("ADMIN", "COMPLEX_OWNER")
+                        .requestMatchers(HttpMethod.GET, "/api/reservas/exportar").hasAnyRole("ADMIN", "COMPLEX_OWNER")
                         .requestMatchers("/api/reservas/{id}").hasAnyRole("ADMIN", "COMPLEX_OWNER", "USER")
                         .requestMatchers("/api/reservas/{id}/pdf-comprobante").hasAnyRole("ADMIN", "COMPLEX_OWNER", "USER")
                         .requestMatchers("/api/reservas/{id}/confirmar").hasAnyRole("ADMIN", "COMPLEX_OWNER")
@@ -122,6 +137,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/users").hasRole("ADMIN")
 
                         .requestMatchers("/api/estadisticas/admin").hasAnyRole("ADMIN", "COMPLEX_OWNER")
+                        .requestMatchers(HttpMethod.POST, "/api/estadisticas/admin/reconstruir").hasRole("ADMIN")
 
                         .anyRequest().authenticated()
                 )
@@ -144,6 +160,7 @@ public class SecurityConfig {
         config.setAllowedOrigins(List.of(frontendUrl, backendUrlBase, "http://localhost:3000"));
         config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
         config.setAllowedHeaders(List.of("Authorization", "Content-Type", "Accept", "X-Requested-With", "Origin"));
+        config.setExposedHeaders(List.of("X-Has-Next", "X-Next-Cursor"));
         config.setAllowCredentials(true);
         config.setMaxAge(3600L);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -216,14 +233,18 @@ public class SecurityConfig {
                     }
 
                     String token = jwtUtil.generateTokenFromUser(user);
+                    // El refresh token no viaja en la URL: se manda un código de un solo uso y vida corta
+                    // que el frontend canjea en /api/auth/refresh.
+                    String codigoRefresh = refreshTokenServicio.emitirCodigoOauth(user);
 
                     String targetUrl = frontendUrl + "/oauth2/redirect?token=" + URLEncoder.encode(token, StandardCharsets.UTF_8);
+                    targetUrl += "&refreshCode=" + URLEncoder.encode(codigoRefresh, StandardCharsets.UTF_8);
 
                     targetUrl += "&name=" + URLEncoder.encode(user.getNombreCompleto(), StandardCharsets.UTF_8);
                     targetUrl += "&username=" + URLEncoder.encode(user.getUsername(), StandardCharsets.UTF_8);
                     targetUrl += "&role=" + URLEncoder.encode(mainRole, StandardCharsets.UTF_8);
 
-                    log.info("Redirecting OAuth2 user to frontend URL: {}", targetUrl);
+                    log.info("Redirecting OAuth2 user {} to frontend URL: {}/oauth2/redirect", user.getUsername(), frontendUrl);
                     response.sendRedirect(targetUrl);
                 } catch (Exception e) {
                     log.error("Error generating JWT or redirecting: {}", e.getMessage(), e);
@@ -0,0 +1,8 @@
+package com.example.reservafutbol.Configuracion;
+
+import java.time.Instant;
+import java.util.List;
+
+// Claims de un JWT con la firma y la expiración ya verificadas. Se obtiene una vez por request con JWTUtil.verificar.
+public record TokenJwtVerificado(String username, String nombreCompleto, List<String> roles, Instant expiracion) {
+}
@@ -0,0 +1,13 @@
+package com.example.reservafutbol.Configuracion;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+// Principal armado con los claims de un JWT verificado, sin cargar la entidad User.
+// authentication.getName() devuelve el username, igual que con el principal User.
+public record UsuarioToken(String username, String nombreCompleto) implements AuthenticatedPrincipal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
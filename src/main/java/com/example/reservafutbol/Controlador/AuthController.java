@@ -7,9 +7,11 @@ import com.example.reservafutbol.Modelo.User;
 import com.example.reservafutbol.Repositorio.RoleRepositorio;
 import com.example.reservafutbol.Repositorio.UsuarioRepositorio;
 import com.example.reservafutbol.Servicio.EmailService;
+import com.example.reservafutbol.Servicio.RefreshTokenServicio;
 import com.example.reservafutbol.Servicio.UsuarioServicio;
 import com.example.reservafutbol.payload.request.LoginRequest;
 import com.example.reservafutbol.payload.request.PasswordResetRequest;
+import com.example.reservafutbol.payload.request.RefreshTokenRequest;
 import com.example.reservafutbol.payload.request.RegisterRequest;
 import com.example.reservafutbol.payload.response.JwtResponse;
 import org.slf4j.Logger;
@@ -62,6 +64,9 @@ public class AuthController {
     @Autowired
     UsuarioServicio usuarioServicio;
 
+    @Autowired
+    RefreshTokenServicio refreshTokenServicio;
+
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@RequestBody LoginRequest loginRequest) {
         log.info("POST /api/auth/login - Intento de login para: {}", loginRequest.getUsername());
@@ -82,18 +87,8 @@ public class AuthController {
             List<String> roles = userDetails.getAuthorities().stream()
                     .map(item -> item.getAuthority())
                     .collect(Collectors.toList());
-
-            // CORREGIDO: Lógica para determinar el "mainRole" (el rol principal a enviar al frontend)
-            // Prioriza ADMIN, luego COMPLEX_OWNER, luego USER.
-            String mainRole = "USER";
-            if (roles.contains(ERole.ROLE_ADMIN.name())) {
-                mainRole = ERole.ROLE_ADMIN.name().replace("ROLE_", "");
-            } else if (roles.contains(ERole.ROLE_COMPLEX_OWNER.name())) {
-                mainRole = ERole.ROLE_COMPLEX_OWNER.name().replace("ROLE_", "");
-            }
-            // Si no es ADMIN ni COMPLEX_OWNER, por defecto ya es USER (o cualquier otro rol que tenga).
-            // No se necesita un else if para ROLE_USER explícitamente a menos que haya otros roles de menor prioridad.
-
+            String mainRole = rolPrincipal(roles);
+            String refreshToken = refreshTokenServicio.emitir(userDetails);
 
             log.info("Login exitoso para {}. Rol principal: {}. Todos los roles: {}", userDetails.getUsername(), mainRole, roles);
 
@@ -101,7 +96,8 @@ public class AuthController {
                     userDetails.getId(),
                     userDetails.getUsername(),
                     userDetails.getNombreCompleto(),
-                    mainRole));
+                    mainRole,
+                    refreshToken));
         } catch (org.springframework.security.core.AuthenticationException e) {
             log.error("Error de autenticación durante el login para {}: {}", loginRequest.getUsername(), e.getMessage());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Error: Usuario o contraseña incorrectos, o cuenta no activada.");
@@ -111,6 +107,47 @@ public class AuthController {
         }
     }
 
+    // Renueva el access token sin volver a validar la contraseña. El refresh token usado queda revocado
+    // y se devuelve uno nuevo, que el cliente tiene que guardar en lugar del anterior.
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@RequestBody RefreshTokenRequest request) {
+        try {
+            RefreshTokenServicio.Renovacion renovacion = refreshTokenServicio.rotar(request.getRefreshToken());
+            User usuario = renovacion.usuario();
+            List<String> roles = usuario.getAuthorities().stream()
+                    .map(item -> item.getAuthority())
+                    .collect(Collectors.toList());
+            log.debug("Access token renovado para {}.", usuario.getUsername());
+            return ResponseEntity.ok(new JwtResponse(jwtUtil.generateTokenFromUser(usuario),
+                    usuario.getId(),
+                    usuario.getUsername(),
+                    usuario.getNombreCompleto(),
+                    rolPrincipal(roles),
+                    renovacion.refreshToken()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (SecurityException e) {
+            log.warn("Renovación de token rechazada: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestBody RefreshTokenRequest request) {
+        refreshTokenServicio.revocar(request.getRefreshToken());
+        return ResponseEntity.noContent().build();
+    }
+
+    // Rol principal a enviar al frontend: prioriza ADMIN, luego COMPLEX_OWNER, luego USER.
+    private static String rolPrincipal(List<String> roles) {
+        if (roles.contains(ERole.ROLE_ADMIN.name())) {
+            return ERole.ROLE_ADMIN.name().replace("ROLE_", "");
+        } else if (roles.contains(ERole.ROLE_COMPLEX_OWNER.name())) {
+            return ERole.ROLE_COMPLEX_OWNER.name().replace("ROLE_", "");
+        }
+        return "USER";
+    }
+
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@RequestBody RegisterRequest signUpRequest) {
         log.info("POST /api/auth/register - Intento de registro para email: {}", signUpRequest.getEmail());
@@ -1,20 +1,30 @@
 package com.example.reservafutbol.Controlador;
 
+import com.example.reservafutbol.DTO.FiltroBusquedaComplejos;
 import com.example.reservafutbol.Modelo.Complejo;
+import com.example.reservafutbol.Servicio.BusquedaCanchasLibresServicio;
+import com.example.reservafutbol.Servicio.CatalogoComplejosCache;
 import com.example.reservafutbol.Servicio.ComplejoServicio;
+import com.example.reservafutbol.Servicio.IndiceBusquedaComplejos;
 import com.example.reservafutbol.payload.request.CrearComplejoRequest;
 import com.example.reservafutbol.payload.response.ComplejoResponseDTO;
+import com.example.reservafutbol.payload.response.ComplejoResumenDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -28,16 +38,22 @@ public class ComplejoControlador {
     @Autowired
     private ComplejoServicio complejoServicio;
 
+    @Autowired
+    private CatalogoComplejosCache catalogoComplejos;
+
+    @Autowired
+    private IndiceBusquedaComplejos indiceBusqueda;
+
+    @Autowired
+    private BusquedaCanchasLibresServicio busquedaCanchasLibres;
+
     @GetMapping
     public ResponseEntity<List<ComplejoResponseDTO>> obtenerTodosLosComplejos() {
         log.info("GET /api/complejos - Obteniendo todos los complejos.");
-        List<Complejo> complejos = complejoServicio.listarTodosLosComplejos();
-        if (complejos.isEmpty()) {
+        List<ComplejoResponseDTO> dtos = catalogoComplejos.listarTodos();
+        if (dtos.isEmpty()) {
             return ResponseEntity.noContent().build();
         }
-        List<ComplejoResponseDTO> dtos = complejos.stream()
-                .map(ComplejoResponseDTO::new)
-                .collect(Collectors.toList());
         return ResponseEntity.ok(dtos);
     }
 
@@ -53,17 +69,67 @@ public class ComplejoControlador {
         return ResponseEntity.ok(complejos);
     }
 
+    // Versión liviana para la página de listado. Responde 304 si el cliente (o la CDN) ya tiene la versión vigente.
+    @GetMapping("/resumen")
+    public ResponseEntity<List<ComplejoResumenDTO>> obtenerResumenComplejos(WebRequest request) {
+        CatalogoComplejosCache.ResumenCatalogo resumen = catalogoComplejos.obtenerResumen();
+        if (request.checkNotModified(resumen.etag(), resumen.ultimaModificacion())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePublic())
+                .eTag(resumen.etag())
+                .lastModified(resumen.ultimaModificacion())
+                .body(resumen.complejos());
+    }
+
+    @GetMapping("/buscar")
+    public ResponseEntity<?> buscarComplejos(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String tipoCancha,
+            @RequestParam(required = false) String superficie,
+            @RequestParam(required = false) Boolean iluminacion,
+            @RequestParam(required = false) Boolean techo,
+            @RequestParam(required = false) Double precioMin,
+            @RequestParam(required = false) Double precioMax,
+            @RequestParam(defaultValue = "50") int limite) {
+        log.info("GET /api/complejos/buscar - q='{}', tipoCancha={}, superficie={}", q, tipoCancha, superficie);
+        try {
+            FiltroBusquedaComplejos filtro = new FiltroBusquedaComplejos(q, tipoCancha, superficie, iluminacion, techo,
+                    precioMin, precioMax, limite);
+            return ResponseEntity.ok(indiceBusqueda.buscar(filtro));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/canchas-libres")
+    public ResponseEntity<?> buscarCanchasLibres(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha,
+            @RequestParam String tipoCancha,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "HH:mm") LocalTime horaDesde,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "HH:mm") LocalTime horaHasta,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String superficie,
+            @RequestParam(required = false) Boolean iluminacion,
+            @RequestParam(required = false) Boolean techo,
+            @RequestParam(required = false) Double precioMax,
+            @RequestParam(defaultValue = "20") int limite) {
+        log.info("GET /api/complejos/canchas-libres - fecha={}, tipoCancha={}, {}-{}", fecha, tipoCancha, horaDesde, horaHasta);
+        try {
+            FiltroBusquedaComplejos filtro = new FiltroBusquedaComplejos(q, tipoCancha, superficie, iluminacion, techo,
+                    null, precioMax, limite);
+            return ResponseEntity.ok(busquedaCanchasLibres.buscar(fecha, horaDesde, horaHasta, filtro));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ComplejoResponseDTO> obtenerComplejoPorId(@PathVariable Long id) {
         log.info("GET /api/complejos/{} - Obteniendo complejo por ID.", id);
-        return complejoServicio.buscarComplejoPorId(id)
-                .map(complejo -> {
-                    ComplejoResponseDTO dto = new ComplejoResponseDTO(complejo);
-                    if (complejo.getFotoUrlsPorResolucion() != null) {
-                        dto.setPortadaUrl(complejo.getFotoUrlsPorResolucion().get("original"));
-                    }
-                    return ResponseEntity.ok(dto);
-                })
+        return catalogoComplejos.obtener(id)
+                .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
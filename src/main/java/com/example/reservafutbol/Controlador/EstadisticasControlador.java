@@ -1,5 +1,6 @@
 package com.example.reservafutbol.Controlador;
 
+import com.example.reservafutbol.Servicio.EstadisticasRollupServicio;
 import com.example.reservafutbol.Servicio.ReservaServicio;
 import com.example.reservafutbol.payload.response.EstadisticasResponse;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,11 +9,14 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication; // ¡Importar Authentication!
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/estadisticas")
@@ -23,6 +27,9 @@ public class EstadisticasControlador {
     @Autowired
     private ReservaServicio reservaServicio;
 
+    @Autowired
+    private EstadisticasRollupServicio rollupEstadisticas;
+
     @GetMapping("/admin")
     // @PreAuthorize("hasRole('ADMIN')") // Ya está cubierto en SecurityConfig, pero puedes mantenerlo si lo necesitas
     @PreAuthorize("hasAnyRole('ADMIN', 'COMPLEX_OWNER')") // Modificado para permitir a ambos roles
@@ -32,4 +39,12 @@ public class EstadisticasControlador {
         EstadisticasResponse estadisticas = reservaServicio.calcularEstadisticas(username); // Pasar el username al servicio
         return ResponseEntity.ok(estadisticas);
     }
+
+    @PostMapping("/admin/reconstruir")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> reconstruirEstadisticas(Authentication authentication) {
+        log.info("POST /api/estadisticas/admin/reconstruir - Reconstrucción del rollup solicitada por {}.", authentication.getName());
+        int filas = rollupEstadisticas.reconstruir();
+        return ResponseEntity.ok(Map.of("filas", filas));
+    }
 }
\ No newline at end of file
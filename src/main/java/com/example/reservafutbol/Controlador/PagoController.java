@@ -2,13 +2,12 @@ package com.example.reservafutbol.Controlador;
 
 import com.example.reservafutbol.DTO.PagoDTO;
 import com.example.reservafutbol.Modelo.Reserva;
-import com.example.reservafutbol.Repositorio.ReservaRepositorio;
 import com.example.reservafutbol.Servicio.MercadoPagoService;
-import com.example.reservafutbol.Servicio.PagoServicio;
+import com.example.reservafutbol.Servicio.ProcesadorNotificacionesPago;
 import com.example.reservafutbol.Servicio.ReservaServicio;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.mercadopago.exceptions.MPApiException;
 import com.mercadopago.exceptions.MPException;
+import com.mercadopago.resources.preference.Preference;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,10 +34,7 @@ public class PagoController {
     private ReservaServicio reservaServicio;
 
     @Autowired
-    private PagoServicio pagoService;
-
-    @Autowired
-    private ReservaRepositorio reservaRepository;
+    private ProcesadorNotificacionesPago procesadorNotificaciones;
 
     @PostMapping("/crear-preferencia/{reservaId}")
     public ResponseEntity<Map<String, String>> crearPreferencia(@PathVariable Long reservaId, @RequestBody PagoDTO pagoDTO) {
@@ -64,7 +60,9 @@ public class PagoController {
                 return ResponseEntity.badRequest().body(response);
             }
 
-            String initPoint = mercadoPagoService.crearPreferencia(reservaId, pagadorFinal, montoFinal);
+            Preference preferencia = mercadoPagoService.crearPreferencia(reservaId, pagadorFinal, montoFinal);
+            String initPoint = preferencia.getInitPoint();
+            reservaServicio.registrarPreferenciaMercadoPago(reservaId, preferencia.getId());
 
             if (initPoint != null && !initPoint.isEmpty()) {
                 response.put("initPoint", initPoint);
@@ -110,6 +108,10 @@ public class PagoController {
                 log.warn("Notificación de Mercado Pago sin 'data.id'. Parámetros: {}", request.getParameterMap());
                 return ResponseEntity.badRequest().body("Notificación sin ID de pago.");
             }
+            if (!paymentId.matches("[A-Za-z0-9_-]{1,64}")) {
+                log.warn("Notificación de Mercado Pago con 'data.id' inválido: {}", paymentId);
+                return ResponseEntity.badRequest().body("ID de pago inválido.");
+            }
 
             // TODO: Implementar validación de firma de notificación de Mercado Pago para seguridad
             // if (!isValidNotificationSignature(request)) {
@@ -117,60 +119,13 @@ public class PagoController {
             //     return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Firma de notificación inválida");
             // }
 
-            JsonNode pagoDetalhes = pagoService.obtenerPagoPorId(paymentId);
-            String status = pagoDetalhes.get("status").asText();
-            String externalReference = pagoDetalhes.has("external_reference") ? pagoDetalhes.get("external_reference").asText() : null;
-
-            if (externalReference == null) {
-                log.error("El pago {} de Mercado Pago no tiene 'external_reference'. No se puede asociar a una reserva.", paymentId);
-                return ResponseEntity.badRequest().body("Pago sin referencia externa.");
-            }
-
-            // Mercado Pago usa external_reference como el ID de la preferencia.
-            // Necesitas buscar la reserva por su preferenceId.
-            Reserva reserva = reservaRepository.findByPreferenceId(externalReference);
-            if (reserva == null) {
-                log.warn("Notificación de pago {} para reserva con external_reference {} (preferenceId) no encontrada.", paymentId, externalReference);
-                return ResponseEntity.badRequest().body("Reserva no encontrada para external_reference (preferenceId): " + externalReference);
-            }
-
-            log.info("Actualizando estado de reserva {} (preferenceId: {}) a: {}", reserva.getId(), externalReference, status);
-            switch (status) {
-                case "approved":
-                    reserva.setPagada(true);
-                    reserva.setEstado("pagada");
-                    reserva.setMetodoPago("MercadoPago"); // Mantener el casing consistente
-                    reserva.setMercadoPagoPaymentId(paymentId);
-                    // Opcional: registrar fecha de pago
-                    // reserva.setFechaPago(new Date());
-                    break;
-                case "pending":
-                    reserva.setPagada(false);
-                    reserva.setEstado("pendiente_pago_mp"); // O un estado más específico como "in_process"
-                    break;
-                case "rejected":
-                    reserva.setPagada(false);
-                    reserva.setEstado("rechazada_pago_mp");
-                    break;
-                case "in_process":
-                    reserva.setPagada(false);
-                    reserva.setEstado("pendiente_pago_mp");
-                    break;
-                case "in_mediation":
-                    reserva.setPagada(false);
-                    reserva.setEstado("en_mediacion_mp");
-                    break;
-                default:
-                    log.warn("Estado de pago desconocido recibido de Mercado Pago: {}", status);
-                    reserva.setEstado("desconocido_mp");
-            }
-            // La lógica @PreUpdate en la entidad Reserva se encarga de ajustar 'estado' final.
-            reservaRepository.save(reserva);
-            log.info("Notificación procesada exitosamente para paymentId: {}", paymentId);
-            return ResponseEntity.ok("Notificación procesada");
+            // Solo se guarda el pago notificado; la consulta a Mercado Pago y la actualización de la reserva
+            // las hace ProcesadorNotificacionesPago en segundo plano.
+            procesadorNotificaciones.encolar(tipo, paymentId);
+            return ResponseEntity.ok("Notificación recibida");
 
         } catch (Exception e) {
-            log.error("Error al procesar la notificación de Mercado Pago", e);
+            log.error("Error al encolar la notificación de Mercado Pago", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error al procesar notificación");
         }
     }
@@ -1,14 +1,18 @@
 package com.example.reservafutbol.Controlador;
 
 import com.example.reservafutbol.DTO.ReservaDetalleDTO;
+import com.example.reservafutbol.DTO.FiltroReservas;
 import com.example.reservafutbol.DTO.ReservaDTO;
 import com.example.reservafutbol.Modelo.Complejo;
 import com.example.reservafutbol.Modelo.Reserva;
 import com.example.reservafutbol.Modelo.User;
 import com.example.reservafutbol.Servicio.ComplejoServicio;
+import com.example.reservafutbol.Servicio.ExportacionReservasServicio;
 import com.example.reservafutbol.Servicio.PdfGeneratorService;
 import com.example.reservafutbol.Servicio.ReservaServicio;
 import com.example.reservafutbol.Servicio.UsuarioServicio;
+import com.example.reservafutbol.payload.response.DisponibilidadGrillaResponse;
+import com.example.reservafutbol.payload.response.PaginaCursor;
 import com.itextpdf.text.DocumentException;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -26,6 +30,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
@@ -54,19 +59,25 @@ public class ReservaControlador {
     @Autowired(required = false)
     private PdfGeneratorService pdfGeneratorService;
 
+    @Autowired
+    private ExportacionReservasServicio exportacionServicio;
+
     @GetMapping("/complejo/{complejoId}/tipo/{tipoCancha}")
     @PreAuthorize("hasAnyRole('ADMIN', 'COMPLEX_OWNER')")
     public ResponseEntity<List<ReservaDetalleDTO>> obtenerReservasPorComplejoYTipo(
-            @PathVariable Long complejoId, @PathVariable String tipoCancha, Authentication authentication) {
+            @PathVariable Long complejoId, @PathVariable String tipoCancha,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) List<String> estado,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size,
+            Authentication authentication) {
         String username = authentication.getName();
         log.info("GET /api/reservas/complejo/{}/tipo/{} por usuario {}", complejoId, tipoCancha, username);
 
         try {
-            List<Reserva> reservas = reservaServicio.listarReservasPorComplejoYTipo(complejoId, tipoCancha, username);
-            List<ReservaDetalleDTO> reservasDTO = reservas.stream()
-                    .map(ReservaDetalleDTO::new)
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(reservasDTO);
+            FiltroReservas filtro = new FiltroReservas(desde, hasta, estado, cursor, size);
+            return respuestaPaginada(reservaServicio.listarReservasPorComplejoYTipo(complejoId, tipoCancha, filtro, username));
         } catch (SecurityException e) {
             log.warn("Acceso denegado a reservas de complejo {} por {}: {}", complejoId, username, e.getMessage());
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, e.getMessage());
@@ -81,24 +92,57 @@ public class ReservaControlador {
 
     @GetMapping("/admin/todas")
     @PreAuthorize("hasAnyRole('ADMIN', 'COMPLEX_OWNER')")
-    public ResponseEntity<List<ReservaDetalleDTO>> obtenerTodas(Authentication authentication) {
+    public ResponseEntity<List<ReservaDetalleDTO>> obtenerTodas(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) List<String> estado,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size,
+            Authentication authentication) {
         String username = authentication.getName();
         log.info("GET /api/reservas/admin/todas - Obteniendo todas las reservas (filtradas por rol si aplica) para: {}", username);
         try {
-            List<Reserva> reservas = reservaServicio.listarTodas(username);
-            List<ReservaDetalleDTO> reservasDTO = reservas.stream()
-                    .map(ReservaDetalleDTO::new)
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(reservasDTO);
+            FiltroReservas filtro = new FiltroReservas(desde, hasta, estado, cursor, size);
+            return respuestaPaginada(reservaServicio.listarTodas(username, filtro));
         } catch (UsernameNotFoundException e) {
             log.error("Usuario no encontrado al listar todas las reservas: {}", username);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            log.warn("Parámetros inválidos al listar todas las reservas: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         } catch (Exception e) {
             log.error("Error inesperado al listar todas las reservas para {}: {}", username, e.getMessage(), e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error interno al listar reservas.");
         }
     }
 
+    @GetMapping("/exportar")
+    @PreAuthorize("hasAnyRole('ADMIN', 'COMPLEX_OWNER')")
+    public ResponseEntity<StreamingResponseBody> exportarReservas(
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            Authentication authentication) {
+        String username = authentication.getName();
+        log.info("GET /api/reservas/exportar?formato={}&desde={}&hasta={} por {}", formato, desde, hasta, username);
+        try {
+            StreamingResponseBody cuerpo = exportacionServicio.prepararExportacion(username, formato, desde, hasta);
+            boolean ndjson = ExportacionReservasServicio.FORMATO_NDJSON.equalsIgnoreCase(formato.trim());
+            String nombreArchivo = "reservas." + (ndjson ? "ndjson" : "csv");
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + nombreArchivo + "\"")
+                    .contentType(ndjson ? MediaType.parseMediaType("application/x-ndjson") : MediaType.parseMediaType("text/csv; charset=UTF-8"))
+                    .body(cuerpo);
+        } catch (UsernameNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (SecurityException e) {
+            log.warn("Exportación de reservas denegada para {}: {}", username, e.getMessage());
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ReservaDetalleDTO> obtenerPorId(@PathVariable Long id) {
         log.info("GET /api/reservas/{} - Obteniendo reserva por ID.", id);
@@ -109,7 +153,13 @@ public class ReservaControlador {
     }
 
     @GetMapping("/usuario")
-    public ResponseEntity<List<ReservaDetalleDTO>> obtenerPorUsuario(Authentication authentication) {
+    public ResponseEntity<List<ReservaDetalleDTO>> obtenerPorUsuario(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) List<String> estado,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size,
+            Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
             log.warn("Intento de acceso a /api/reservas/usuario sin autenticación.");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
@@ -117,14 +167,14 @@ public class ReservaControlador {
         String username = authentication.getName();
         log.info("GET /api/reservas/usuario para {}", username);
         try {
-            List<Reserva> reservas = reservaServicio.obtenerReservasPorUsername(username);
-            List<ReservaDetalleDTO> reservasDTO = reservas.stream()
-                    .map(ReservaDetalleDTO::new)
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(reservasDTO);
+            FiltroReservas filtro = new FiltroReservas(desde, hasta, estado, cursor, size);
+            return respuestaPaginada(reservaServicio.obtenerReservasPorUsername(username, filtro));
         } catch (UsernameNotFoundException e) {
             log.error("Usuario no encontrado al buscar sus reservas: {}", username);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Parámetros inválidos al buscar reservas de {}: {}", username, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         } catch (Exception e) {
             log.error("Error buscando reservas para usuario {}: {}", username, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -324,23 +374,48 @@ public class ReservaControlador {
         }
     }
 
+    @GetMapping("/disponibilidad-grilla")
+    public ResponseEntity<DisponibilidadGrillaResponse> getGrillaDisponibilidad(
+            @RequestParam @NotNull Long complejoId,
+            @RequestParam @NotNull @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        LocalDate fechaHasta = hasta != null ? hasta : desde;
+        log.info("GET /api/reservas/disponibilidad-grilla?complejoId={}&desde={}&hasta={}", complejoId, desde, fechaHasta);
+        try {
+            return ResponseEntity.ok(reservaServicio.calcularGrillaDisponibilidad(complejoId, desde, fechaHasta));
+        } catch (IllegalArgumentException e) {
+            log.warn("Error de validación al obtener grilla de disponibilidad: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            log.error("Error al obtener grilla de disponibilidad para complejo ID: {} entre {} y {}: {}",
+                    complejoId, desde, fechaHasta, e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error interno al verificar disponibilidad.");
+        }
+    }
+
     @GetMapping("/complejo/mis-reservas")
     @PreAuthorize("hasRole('COMPLEX_OWNER')")
-    public ResponseEntity<List<ReservaDetalleDTO>> obtenerReservasDeMiComplejo(Authentication authentication) {
+    public ResponseEntity<List<ReservaDetalleDTO>> obtenerReservasDeMiComplejo(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) List<String> estado,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size,
+            Authentication authentication) {
         String username = authentication.getName();
         log.info("GET /api/reservas/complejo/mis-reservas - Obteniendo reservas para el complejo del propietario: {}", username);
         try {
-            List<Reserva> reservas = reservaServicio.listarReservasDelPropietario(username);
-            List<ReservaDetalleDTO> reservasDTO = reservas.stream()
-                    .map(ReservaDetalleDTO::new)
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(reservasDTO);
+            FiltroReservas filtro = new FiltroReservas(desde, hasta, estado, cursor, size);
+            return respuestaPaginada(reservaServicio.listarReservasDelPropietario(username, filtro));
         } catch (UsernameNotFoundException e) {
             log.error("Propietario no encontrado al listar sus reservas: {}", username);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
         } catch (SecurityException e) {
             log.warn("Acceso denegado para obtener reservas del complejo del propietario {}: {}", username, e.getMessage());
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            log.warn("Parámetros inválidos al obtener reservas del propietario {}: {}", username, e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         } catch (Exception e) {
             log.error("Error inesperado al obtener reservas del complejo para {}: {}", username, e.getMessage(), e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error interno al obtener reservas.");
@@ -366,4 +441,17 @@ public class ReservaControlador {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error interno al cancelar la reserva.");
         }
     }
-}
\ No newline at end of file
+
+    // Los listados devuelven la página como lista (mismo formato que antes) y el cursor de la siguiente en headers.
+    private ResponseEntity<List<ReservaDetalleDTO>> respuestaPaginada(PaginaCursor<Reserva> pagina) {
+        List<ReservaDetalleDTO> reservasDTO = pagina.getContenido().stream()
+                .map(ReservaDetalleDTO::new)
+                .collect(Collectors.toList());
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .header("X-Has-Next", String.valueOf(pagina.hayMas()));
+        if (pagina.hayMas()) {
+            respuesta.header("X-Next-Cursor", pagina.getSiguienteCursor());
+        }
+        return respuesta.body(reservasDTO);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.reservafutbol.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Criterios de búsqueda de complejos. Los filtros por tipo (superficie, iluminación, techo, precio) se cumplen
+// si algún tipo de cancha del complejo (o el tipo indicado en tipoCancha) los cumple todos a la vez.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FiltroBusquedaComplejos {
+    private String q; // Texto libre sobre nombre, ubicación y descripción
+    private String tipoCancha;
+    private String superficie;
+    private Boolean iluminacion;
+    private Boolean techo;
+    private Double precioMin;
+    private Double precioMax;
+    private int limite;
+}
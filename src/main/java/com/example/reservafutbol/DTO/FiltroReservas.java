@@ -0,0 +1,20 @@
+package com.example.reservafutbol.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Filtros y cursor de los listados de reservas (paginación por keyset sobre fechaHora, id).
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FiltroReservas {
+    private LocalDate desde;
+    private LocalDate hasta;
+    private List<String> estados;
+    private String cursor; // Opaco: lo devuelve la página anterior en X-Next-Cursor
+    private int tamanio;
+}
@@ -1,16 +1,23 @@
 package com.example.reservafutbol.Modelo;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 @Entity
 @Table(name = "complejos")
@@ -32,11 +39,13 @@ public class Complejo {
     private String telefono;
 
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
     @CollectionTable(name = "complejo_fotos", joinColumns = @JoinColumn(name = "complejo_id"))
     @Column(name = "foto_url")
     private List<String> fotoUrls = new ArrayList<>();
 
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
     @CollectionTable(name = "complejo_fotos_resoluciones", joinColumns = @JoinColumn(name = "complejo_id"))
     @MapKeyColumn(name = "tipo_resolucion")
     @Column(name = "foto_url")
@@ -52,35 +61,14 @@ public class Complejo {
     @JoinColumn(name = "propietario_id")
     private User propietario;
 
+    // Cantidad, precio, superficie, iluminación y techo de cada tipo de cancha, en una sola tabla.
+    // Los mapas canchaCounts, canchaPrices, etc. se exponen como vistas derivadas para no cambiar la API.
+    @JsonIgnore
     @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "complejo_cancha_counts", joinColumns = @JoinColumn(name = "complejo_id"))
+    @Fetch(FetchMode.SUBSELECT)
+    @CollectionTable(name = "complejo_tipos_cancha", joinColumns = @JoinColumn(name = "complejo_id"))
     @MapKeyColumn(name = "tipo_cancha")
-    @Column(name = "cantidad")
-    private Map<String, Integer> canchaCounts = new HashMap<>();
-
-    @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "complejo_cancha_prices", joinColumns = @JoinColumn(name = "complejo_id"))
-    @MapKeyColumn(name = "tipo_cancha")
-    @Column(name = "precio_por_hora")
-    private Map<String, Double> canchaPrices = new HashMap<>();
-
-    @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "complejo_cancha_surfaces", joinColumns = @JoinColumn(name = "complejo_id"))
-    @MapKeyColumn(name = "tipo_cancha")
-    @Column(name = "superficie")
-    private Map<String, String> canchaSurfaces = new HashMap<>();
-
-    @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "complejo_cancha_iluminacion", joinColumns = @JoinColumn(name = "complejo_id"))
-    @MapKeyColumn(name = "tipo_cancha")
-    @Column(name = "iluminacion")
-    private Map<String, Boolean> canchaIluminacion = new HashMap<>();
-
-    @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "complejo_cancha_techo", joinColumns = @JoinColumn(name = "complejo_id"))
-    @MapKeyColumn(name = "tipo_cancha")
-    @Column(name = "techo")
-    private Map<String, Boolean> canchaTecho = new HashMap<>();
+    private Map<String, TipoCanchaComplejo> tiposCancha = new HashMap<>();
 
     public Complejo(String nombre, String ubicacion, String telefono, LocalTime horarioApertura, LocalTime horarioCierre) {
         this.nombre = nombre;
@@ -89,4 +77,79 @@ public class Complejo {
         this.horarioApertura = horarioApertura;
         this.horarioCierre = horarioCierre;
     }
+
+    public Map<String, Integer> getCanchaCounts() {
+        return extraer(TipoCanchaComplejo::getCantidad);
+    }
+
+    public void setCanchaCounts(Map<String, Integer> canchaCounts) {
+        asignar(canchaCounts, TipoCanchaComplejo::setCantidad);
+    }
+
+    public Map<String, Double> getCanchaPrices() {
+        return extraer(TipoCanchaComplejo::getPrecioPorHora);
+    }
+
+    public void setCanchaPrices(Map<String, Double> canchaPrices) {
+        asignar(canchaPrices, TipoCanchaComplejo::setPrecioPorHora);
+    }
+
+    public Map<String, String> getCanchaSurfaces() {
+        return extraer(TipoCanchaComplejo::getSuperficie);
+    }
+
+    public void setCanchaSurfaces(Map<String, String> canchaSurfaces) {
+        asignar(canchaSurfaces, TipoCanchaComplejo::setSuperficie);
+    }
+
+    public Map<String, Boolean> getCanchaIluminacion() {
+        return extraer(TipoCanchaComplejo::getIluminacion);
+    }
+
+    public void setCanchaIluminacion(Map<String, Boolean> canchaIluminacion) {
+        asignar(canchaIluminacion, TipoCanchaComplejo::setIluminacion);
+    }
+
+    public Map<String, Boolean> getCanchaTecho() {
+        return extraer(TipoCanchaComplejo::getTecho);
+    }
+
+    public void setCanchaTecho(Map<String, Boolean> canchaTecho) {
+        asignar(canchaTecho, TipoCanchaComplejo::setTecho);
+    }
+
+    // Devuelve una copia: modificarla no cambia el complejo, hay que usar el setter correspondiente.
+    private <V> Map<String, V> extraer(Function<TipoCanchaComplejo, V> atributo) {
+        Map<String, V> valores = new HashMap<>();
+        if (tiposCancha != null) {
+            tiposCancha.forEach((tipo, datos) -> {
+                V valor = atributo.apply(datos);
+                if (valor != null) {
+                    valores.put(tipo, valor);
+                }
+            });
+        }
+        return valores;
+    }
+
+    // Reemplaza un atributo en todos los tipos: los que no vienen en el mapa quedan sin ese valor, y un tipo
+    // sin ningún atributo se elimina. Se reemplazan los embebidos en vez de modificarlos para que Hibernate detecte el cambio.
+    private <V> void asignar(Map<String, V> valores, BiConsumer<TipoCanchaComplejo, V> atributo) {
+        if (tiposCancha == null) {
+            tiposCancha = new HashMap<>();
+        }
+        Map<String, V> nuevos = valores != null ? valores : Map.of();
+        Set<String> tipos = new HashSet<>(tiposCancha.keySet());
+        tipos.addAll(nuevos.keySet());
+        for (String tipo : tipos) {
+            TipoCanchaComplejo actual = tiposCancha.get(tipo);
+            TipoCanchaComplejo copia = actual != null ? actual.copiar() : new TipoCanchaComplejo();
+            atributo.accept(copia, nuevos.get(tipo));
+            if (copia.estaVacio()) {
+                tiposCancha.remove(tipo);
+            } else if (!copia.equals(actual)) {
+                tiposCancha.put(tipo, copia);
+            }
+        }
+    }
 }
@@ -0,0 +1,44 @@
+package com.example.reservafutbol.Modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Fila del rollup de estadísticas: cantidad de reservas e ingresos por (complejo, día, tipo de cancha, hora, estado).
+// La mantiene EstadisticasRollupServicio en la misma transacción que cada alta o cambio de estado de una reserva.
+@Entity
+@Table(name = "estadisticas_reservas", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_estadisticas_reservas_clave", columnNames = {"complejo_id", "fecha", "tipo_cancha", "hora", "estado"})
+})
+@Getter @Setter @NoArgsConstructor
+public class EstadisticaReserva {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "complejo_id", nullable = false)
+    private Long complejoId;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    @Column(name = "tipo_cancha", nullable = false)
+    private String tipoCancha;
+
+    @Column(nullable = false)
+    private Integer hora;
+
+    @Column(nullable = false, length = 50)
+    private String estado;
+
+    @Column(nullable = false)
+    private Long cantidad;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal ingresos;
+}
@@ -1,5 +1,7 @@
 package com.example.reservafutbol.Modelo;
 
+import java.util.Set;
+
 // Un enum para definir los estados posibles de una reserva.
 public enum EstadoReserva {
     PENDIENTE("pendiente"),
@@ -10,6 +12,11 @@ public enum EstadoReserva {
     RECHAZADA_PAGO_MP("rechazada_pago_mp"),
     CANCELADA("cancelada");
 
+    // Estados que mantienen ocupada una instancia de cancha (mismo criterio que findConflictingReservationsForPool)
+    private static final Set<String> ESTADOS_QUE_OCUPAN = Set.of(
+            "pendiente", "confirmada", "pagada", "pendiente_pago_efectivo", "pendiente_pago_mp"
+    );
+
     private final String valor;
 
     EstadoReserva(String valor) {
@@ -31,4 +38,8 @@ public enum EstadoReserva {
         // o devolver un valor por defecto como EstadoReserva.PENDIENTE
         throw new IllegalArgumentException("No se encontró un estado de reserva con el valor: " + text);
     }
+
+    public static boolean ocupaCancha(String estado) {
+        return estado != null && ESTADOS_QUE_OCUPAN.contains(estado.toLowerCase());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.example.reservafutbol.Modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Notificación pendiente de envío. Se guarda en la misma transacción que la operación que la origina
+// y la despacha DespachadorNotificaciones en segundo plano, con reintentos.
+@Entity
+@Table(name = "notificaciones_outbox", indexes = {
+        @Index(name = "idx_outbox_estado_proximo_intento", columnList = "estado, proximo_intento")
+})
+@Getter @Setter @NoArgsConstructor
+public class NotificacionOutbox {
+
+    public static final String TIPO_NUEVA_RESERVA = "NUEVA_RESERVA";
+
+    public static final String ESTADO_PENDIENTE = "PENDIENTE";
+    public static final String ESTADO_ENVIANDO = "ENVIANDO";
+    public static final String ESTADO_ENVIADA = "ENVIADA";
+    public static final String ESTADO_FALLIDA = "FALLIDA";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String tipo;
+
+    @Column(name = "reserva_id")
+    private Long reservaId;
+
+    @Column(nullable = false)
+    private String destinatario;
+
+    @Column(nullable = false, length = 20)
+    private String estado = ESTADO_PENDIENTE;
+
+    @Column(nullable = false)
+    private int intentos = 0;
+
+    @Column(name = "proximo_intento", nullable = false)
+    private LocalDateTime proximoIntento;
+
+    @Column(name = "ultimo_error", length = 1000)
+    private String ultimoError;
+
+    @Column(name = "creado_en", nullable = false)
+    private LocalDateTime creadoEn;
+
+    @Column(name = "enviado_en")
+    private LocalDateTime enviadoEn;
+
+    public NotificacionOutbox(String tipo, Long reservaId, String destinatario) {
+        this.tipo = tipo;
+        this.reservaId = reservaId;
+        this.destinatario = destinatario;
+    }
+
+    @PrePersist
+    public void prePersist() {
+        LocalDateTime ahora = LocalDateTime.now();
+        if (this.creadoEn == null) {
+            this.creadoEn = ahora;
+        }
+        if (this.proximoIntento == null) {
+            this.proximoIntento = ahora;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.reservafutbol.Modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Notificación de Mercado Pago recibida en el webhook. Hay una sola fila por pago: las notificaciones repetidas
+// para el mismo pago solo incrementan 'recepciones', y ProcesadorNotificacionesPago las resuelve con una única consulta.
+@Entity
+@Table(name = "notificaciones_pago", indexes = {
+        @Index(name = "idx_notificaciones_pago_payment_id", columnList = "payment_id", unique = true),
+        @Index(name = "idx_notificaciones_pago_estado_proximo_intento", columnList = "estado, proximo_intento")
+})
+@Getter @Setter @NoArgsConstructor
+public class NotificacionPago {
+
+    public static final String ESTADO_PENDIENTE = "PENDIENTE";
+    public static final String ESTADO_PROCESANDO = "PROCESANDO";
+    public static final String ESTADO_PROCESADA = "PROCESADA";
+    public static final String ESTADO_FALLIDA = "FALLIDA";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "payment_id", nullable = false, length = 64)
+    private String paymentId;
+
+    @Column(nullable = false, length = 50)
+    private String tipo;
+
+    @Column(nullable = false, length = 20)
+    private String estado = ESTADO_PENDIENTE;
+
+    // Cantidad de notificaciones recibidas para el pago. Si cambia mientras se procesa, el pago se vuelve a consultar.
+    @Column(nullable = false)
+    private int recepciones = 1;
+
+    @Column(nullable = false)
+    private int intentos = 0;
+
+    @Column(name = "proximo_intento", nullable = false)
+    private LocalDateTime proximoIntento;
+
+    // Último estado de Mercado Pago ya aplicado a la reserva, para no repetir la transición.
+    @Column(name = "estado_mp", length = 30)
+    private String estadoMp;
+
+    @Column(name = "ultimo_error", length = 1000)
+    private String ultimoError;
+
+    @Column(name = "recibida_en", nullable = false)
+    private LocalDateTime recibidaEn;
+
+    @Column(name = "ultima_recepcion", nullable = false)
+    private LocalDateTime ultimaRecepcion;
+
+    @Column(name = "procesada_en")
+    private LocalDateTime procesadaEn;
+}
@@ -0,0 +1,61 @@
+package com.example.reservafutbol.Modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Refresh token opaco. Solo se guarda su hash SHA-256; el valor lo tiene únicamente el cliente.
+// Cada renovación revoca el token usado y emite otro de la misma familia: si un token ya usado vuelve a aparecer,
+// se asume que fue robado y se revoca la familia entera.
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "idx_refresh_tokens_hash", columnList = "token_hash", unique = true),
+        @Index(name = "idx_refresh_tokens_familia", columnList = "familia"),
+        @Index(name = "idx_refresh_tokens_usuario", columnList = "usuario_id")
+})
+@Getter @Setter @NoArgsConstructor
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token_hash", nullable = false, length = 64)
+    private String tokenHash;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "usuario_id", nullable = false)
+    private User usuario;
+
+    @Column(nullable = false, length = 36)
+    private String familia;
+
+    @Column(name = "creado_en", nullable = false)
+    private LocalDateTime creadoEn;
+
+    @Column(name = "expira_en", nullable = false)
+    private LocalDateTime expiraEn;
+
+    @Column(name = "usado_en")
+    private LocalDateTime usadoEn;
+
+    @Column(nullable = false)
+    private boolean revocado = false;
+
+    public RefreshToken(String tokenHash, User usuario, String familia, LocalDateTime expiraEn) {
+        this.tokenHash = tokenHash;
+        this.usuario = usuario;
+        this.familia = familia;
+        this.expiraEn = expiraEn;
+    }
+
+    @PrePersist
+    public void prePersist() {
+        if (this.creadoEn == null) {
+            this.creadoEn = LocalDateTime.now();
+        }
+    }
+}
@@ -13,7 +13,14 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 
 @Entity
-@Table(name = "reservas")
+@Table(name = "reservas", indexes = {
+        @Index(name = "idx_reservas_complejo_tipo_fecha", columnList = "complejo_id, tipo_cancha_reservada, fechaHora"),
+        @Index(name = "idx_reservas_usuario_fecha", columnList = "usuario_id, fechaHora"),
+        @Index(name = "idx_reservas_fecha_id", columnList = "fechaHora, id"),
+        @Index(name = "idx_reservas_preference_id", columnList = "preference_id"),
+        @Index(name = "idx_reservas_mp_payment_id", columnList = "mercadoPagoPaymentId"),
+        @Index(name = "idx_reservas_estado_fecha_creacion", columnList = "estado, fecha_creacion")
+})
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor
 @Builder
 public class Reserva {
@@ -66,7 +73,24 @@ public class Reserva {
     private LocalDateTime fechaPago;
     private String mercadoPagoPaymentId;
 
+    // Pago aprobado de Mercado Pago que llegó con la reserva ya cancelada (por ejemplo, vencida la retención):
+    // la reserva no se reactiva y el pago queda marcado para devolver.
+    @Column(name = "pago_a_devolver")
+    private Boolean pagoADevolver;
+
+    // Inicio de la retención del turno: las reservas de Mercado Pago sin pagar vencen a partir de acá
+    // (ver VencimientoReservasServicio). Es nula en las reservas anteriores a la columna.
+    @Column(name = "fecha_creacion")
+    private LocalDateTime fechaCreacion;
+
     @PrePersist
+    public void alCrear() {
+        if (this.fechaCreacion == null) {
+            this.fechaCreacion = LocalDateTime.now();
+        }
+        updateComplejoNombreAndEstado();
+    }
+
     @PreUpdate
     public void updateComplejoNombreAndEstado() { // Renombrado para ser más descriptivo
         // Asegura que complejoNombre se guarde/actualice al persistir/actualizar la reserva
@@ -74,25 +98,31 @@ public class Reserva {
             this.complejoNombre = this.complejo.getNombre();
         }
 
-        // Lógica para actualizar el estado basada en 'pagada' y 'metodoPago'
+        this.estado = estadoEfectivo(this.estado, this.pagada, this.metodoPago);
+    }
+
+    // Lógica para actualizar el estado basada en 'pagada' y 'metodoPago'. Es estática para que las actualizaciones
+    // masivas (que no pasan por @PreUpdate) calculen exactamente el mismo estado.
+    public static String estadoEfectivo(String estado, Boolean pagada, String metodoPago) {
         // Prioridad: Pagada > Rechazada/Cancelada > Pendiente Efe > Pendiente MP > Pendiente General
-        if (Boolean.TRUE.equals(this.pagada)) {
-            this.estado = "pagada";
-        } else if ("rechazada_pago_mp".equalsIgnoreCase(this.estado)) {
+        if (Boolean.TRUE.equals(pagada)) {
+            return "pagada";
+        } else if ("rechazada_pago_mp".equalsIgnoreCase(estado)) {
             // Mantener estado de rechazada_pago_mp si ya está así
-            this.estado = "rechazada_pago_mp";
-        } else if ("cancelada".equalsIgnoreCase(this.estado)) {
+            return "rechazada_pago_mp";
+        } else if ("cancelada".equalsIgnoreCase(estado)) {
             // Mantener estado de cancelada si ya está así
-            this.estado = "cancelada";
-        } else if ("efectivo".equalsIgnoreCase(this.metodoPago)) {
-            this.estado = "pendiente_pago_efectivo";
-        } else if ("mercadopago".equalsIgnoreCase(this.metodoPago)) {
-            this.estado = "pendiente_pago_mp";
+            return "cancelada";
+        } else if ("efectivo".equalsIgnoreCase(metodoPago)) {
+            return "pendiente_pago_efectivo";
+        } else if ("mercadopago".equalsIgnoreCase(metodoPago)) {
+            return "pendiente_pago_mp";
         } else {
             // Si no hay método de pago o es desconocido, o si el estado es null/vacío, se pone a 'pendiente'
-            if (this.estado == null || this.estado.isBlank() || this.estado.equals("pendiente")) {
-                this.estado = "pendiente";
+            if (estado == null || estado.isBlank() || estado.equals("pendiente")) {
+                return "pendiente";
             }
+            return estado;
         }
     }
 
@@ -0,0 +1,38 @@
+package com.example.reservafutbol.Modelo;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Atributos de un tipo de cancha dentro de un complejo. Una fila por (complejo, tipo_cancha) en complejo_tipos_cancha.
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TipoCanchaComplejo {
+
+    @Column(name = "cantidad")
+    private Integer cantidad;
+
+    @Column(name = "precio_por_hora")
+    private Double precioPorHora;
+
+    @Column(name = "superficie")
+    private String superficie;
+
+    @Column(name = "iluminacion")
+    private Boolean iluminacion;
+
+    @Column(name = "techo")
+    private Boolean techo;
+
+    public TipoCanchaComplejo copiar() {
+        return new TipoCanchaComplejo(cantidad, precioPorHora, superficie, iluminacion, techo);
+    }
+
+    public boolean estaVacio() {
+        return cantidad == null && precioPorHora == null && superficie == null && iluminacion == null && techo == null;
+    }
+}
@@ -3,6 +3,8 @@ package com.example.reservafutbol.Repositorio;
 import com.example.reservafutbol.Modelo.Complejo;
 import com.example.reservafutbol.Modelo.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,4 +15,22 @@ public interface ComplejoRepositorio extends JpaRepository<Complejo, Long> {
 
     Optional<Complejo> findByNombre(String nombre);
     List<Complejo> findByPropietario(User propietario);
+
+    @Query("SELECT c.id FROM Complejo c WHERE c.propietario = :propietario")
+    List<Long> findIdsByPropietario(@Param("propietario") User propietario);
+
+    // Listado del catálogo en una sola consulta: sin cargar colecciones ni propietario.
+    @Query("SELECT c.id AS id, c.nombre AS nombre, c.ubicacion AS ubicacion, VALUE(f) AS portadaUrl, " +
+            "MIN(t.precioPorHora) AS precioMinimo " +
+            "FROM Complejo c LEFT JOIN c.fotoUrlsPorResolucion f ON KEY(f) = 'thumbnail' LEFT JOIN c.tiposCancha t " +
+            "GROUP BY c.id, c.nombre, c.ubicacion, VALUE(f) ORDER BY c.nombre, c.id")
+    List<ComplejoResumen> findResumenes();
+
+    interface ComplejoResumen {
+        Long getId();
+        String getNombre();
+        String getUbicacion();
+        String getPortadaUrl();
+        Double getPrecioMinimo();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package com.example.reservafutbol.Repositorio;
+
+import com.example.reservafutbol.Modelo.EstadisticaReserva;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface EstadisticaReservaRepositorio extends JpaRepository<EstadisticaReserva, Long> {
+
+    interface ConteoPorEstado {
+        String getEstado();
+        Long getCantidad();
+        BigDecimal getMonto();
+    }
+
+    interface ConteoPorClave {
+        String getClave();
+        Long getCantidad();
+    }
+
+    interface ConteoPorHora {
+        Integer getHora();
+        Long getCantidad();
+    }
+
+    // Suma (o resta, con delta negativo) una reserva a su fila del rollup, creándola si no existe.
+    @Modifying
+    @Query(value = "INSERT INTO estadisticas_reservas (complejo_id, fecha, tipo_cancha, hora, estado, cantidad, ingresos) " +
+            "VALUES (:complejoId, :fecha, :tipoCancha, :hora, :estado, :cantidad, :ingresos) " +
+            "ON CONFLICT (complejo_id, fecha, tipo_cancha, hora, estado) DO UPDATE SET " +
+            "cantidad = estadisticas_reservas.cantidad + EXCLUDED.cantidad, " +
+            "ingresos = estadisticas_reservas.ingresos + EXCLUDED.ingresos", nativeQuery = true)
+    int acumular(@Param("complejoId") Long complejoId,
+                 @Param("fecha") LocalDate fecha,
+                 @Param("tipoCancha") String tipoCancha,
+                 @Param("hora") int hora,
+                 @Param("estado") String estado,
+                 @Param("cantidad") long cantidad,
+                 @Param("ingresos") BigDecimal ingresos);
+
+    // Bloquea las escrituras incrementales mientras se reconstruye; las transacciones que ya acumularon
+    // terminan antes, y las que llegan después esperan y suman sobre el resultado reconstruido.
+    @Modifying
+    @Query(value = "LOCK TABLE estadisticas_reservas IN EXCLUSIVE MODE", nativeQuery = true)
+    void bloquearParaReconstruir();
+
+    @Modifying
+    @Query(value = "DELETE FROM estadisticas_reservas", nativeQuery = true)
+    int vaciar();
+
+    @Modifying
+    @Query(value = "INSERT INTO estadisticas_reservas (complejo_id, fecha, tipo_cancha, hora, estado, cantidad, ingresos) " +
+            "SELECT r.complejo_id, CAST(r.fecha_hora AS date), r.tipo_cancha_reservada, CAST(EXTRACT(HOUR FROM r.fecha_hora) AS integer), " +
+            "LOWER(r.estado), COUNT(*), COALESCE(SUM(r.precio), 0) FROM reservas r " +
+            "GROUP BY r.complejo_id, CAST(r.fecha_hora AS date), r.tipo_cancha_reservada, CAST(EXTRACT(HOUR FROM r.fecha_hora) AS integer), LOWER(r.estado)",
+            nativeQuery = true)
+    int recalcularDesdeReservas();
+
+    @Query("SELECT e.estado AS estado, SUM(e.cantidad) AS cantidad, SUM(e.ingresos) AS monto FROM EstadisticaReserva e GROUP BY e.estado")
+    List<ConteoPorEstado> contarPorEstado();
+
+    @Query("SELECT e.estado AS estado, SUM(e.cantidad) AS cantidad, SUM(e.ingresos) AS monto FROM EstadisticaReserva e " +
+            "WHERE e.complejoId IN :complejoIds GROUP BY e.estado")
+    List<ConteoPorEstado> contarPorEstadoEnComplejos(@Param("complejoIds") List<Long> complejoIds);
+
+    @Query("SELECT e.tipoCancha AS clave, SUM(e.cantidad) AS cantidad FROM EstadisticaReserva e GROUP BY e.tipoCancha")
+    List<ConteoPorClave> contarPorTipoCancha();
+
+    @Query("SELECT e.tipoCancha AS clave, SUM(e.cantidad) AS cantidad FROM EstadisticaReserva e " +
+            "WHERE e.complejoId IN :complejoIds GROUP BY e.tipoCancha")
+    List<ConteoPorClave> contarPorTipoCanchaEnComplejos(@Param("complejoIds") List<Long> complejoIds);
+
+    @Query("SELECT e.hora AS hora, SUM(e.cantidad) AS cantidad FROM EstadisticaReserva e GROUP BY e.hora")
+    List<ConteoPorHora> contarPorHora();
+
+    @Query("SELECT e.hora AS hora, SUM(e.cantidad) AS cantidad FROM EstadisticaReserva e " +
+            "WHERE e.complejoId IN :complejoIds GROUP BY e.hora")
+    List<ConteoPorHora> contarPorHoraEnComplejos(@Param("complejoIds") List<Long> complejoIds);
+}
@@ -0,0 +1,43 @@
+package com.example.reservafutbol.Repositorio;
+
+import com.example.reservafutbol.Modelo.NotificacionOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificacionOutboxRepositorio extends JpaRepository<NotificacionOutbox, Long> {
+
+    // Pendientes cuyo próximo intento ya venció, más las que quedaron 'ENVIANDO' de un proceso que se cayó
+    // (en ese estado proximoIntento funciona como vencimiento de la reserva del envío).
+    @Query("SELECT n.id FROM NotificacionOutbox n WHERE (n.estado = 'PENDIENTE' OR n.estado = 'ENVIANDO') " +
+            "AND n.proximoIntento <= :ahora ORDER BY n.proximoIntento ASC")
+    List<Long> findIdsListosParaEnviar(@Param("ahora") LocalDateTime ahora, Pageable pageable);
+
+    // Update condicional: solo un despachador (de cualquier instancia) puede quedarse con cada notificación.
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE NotificacionOutbox n SET n.estado = 'ENVIANDO', n.proximoIntento = :vencimiento " +
+            "WHERE n.id = :id AND (n.estado = 'PENDIENTE' OR n.estado = 'ENVIANDO') AND n.proximoIntento <= :ahora")
+    int reclamar(@Param("id") Long id, @Param("ahora") LocalDateTime ahora, @Param("vencimiento") LocalDateTime vencimiento);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE NotificacionOutbox n SET n.estado = 'ENVIADA', n.intentos = n.intentos + 1, n.enviadoEn = :ahora, " +
+            "n.ultimoError = NULL WHERE n.id = :id")
+    int marcarEnviada(@Param("id") Long id, @Param("ahora") LocalDateTime ahora);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE NotificacionOutbox n SET n.estado = :estado, n.intentos = n.intentos + 1, " +
+            "n.proximoIntento = :proximoIntento, n.ultimoError = :error WHERE n.id = :id")
+    int registrarFallo(@Param("id") Long id, @Param("estado") String estado,
+                       @Param("proximoIntento") LocalDateTime proximoIntento, @Param("error") String error);
+}
@@ -0,0 +1,66 @@
+package com.example.reservafutbol.Repositorio;
+
+import com.example.reservafutbol.Modelo.NotificacionPago;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificacionPagoRepositorio extends JpaRepository<NotificacionPago, Long> {
+
+    // Encola o agrupa en una sola sentencia: la primera notificación de un pago crea la fila, las siguientes la reutilizan.
+    // Un pago ya resuelto vuelve a 'PENDIENTE' (MP notifica de nuevo cuando cambia su estado); uno pendiente o en
+    // proceso solo suma la recepción.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO notificaciones_pago (payment_id, tipo, estado, recepciones, intentos, proximo_intento, recibida_en, ultima_recepcion) " +
+            "VALUES (:paymentId, :tipo, 'PENDIENTE', 1, 0, :ahora, :ahora, :ahora) " +
+            "ON CONFLICT (payment_id) DO UPDATE SET " +
+            "recepciones = notificaciones_pago.recepciones + 1, " +
+            "ultima_recepcion = EXCLUDED.ultima_recepcion, " +
+            "intentos = CASE WHEN notificaciones_pago.estado IN ('PROCESADA', 'FALLIDA') THEN 0 ELSE notificaciones_pago.intentos END, " +
+            "proximo_intento = CASE WHEN notificaciones_pago.estado IN ('PROCESADA', 'FALLIDA') THEN EXCLUDED.proximo_intento ELSE notificaciones_pago.proximo_intento END, " +
+            "estado = CASE WHEN notificaciones_pago.estado IN ('PROCESADA', 'FALLIDA') THEN 'PENDIENTE' ELSE notificaciones_pago.estado END",
+            nativeQuery = true)
+    int encolar(@Param("paymentId") String paymentId, @Param("tipo") String tipo, @Param("ahora") LocalDateTime ahora);
+
+    // Igual que en el outbox de correos, las 'PROCESANDO' vencidas son de un proceso que se cayó y se vuelven a tomar.
+    @Query("SELECT n.id FROM NotificacionPago n WHERE (n.estado = 'PENDIENTE' OR n.estado = 'PROCESANDO') " +
+            "AND n.proximoIntento <= :ahora ORDER BY n.proximoIntento ASC")
+    List<Long> findIdsListosParaProcesar(@Param("ahora") LocalDateTime ahora, Pageable pageable);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE NotificacionPago n SET n.estado = 'PROCESANDO', n.proximoIntento = :vencimiento " +
+            "WHERE n.id = :id AND (n.estado = 'PENDIENTE' OR n.estado = 'PROCESANDO') AND n.proximoIntento <= :ahora")
+    int reclamar(@Param("id") Long id, @Param("ahora") LocalDateTime ahora, @Param("vencimiento") LocalDateTime vencimiento);
+
+    // Si llegaron notificaciones nuevas mientras se procesaba, queda 'PENDIENTE' para consultar el pago otra vez.
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE NotificacionPago n SET " +
+            "n.estado = CASE WHEN n.recepciones = :recepciones THEN 'PROCESADA' ELSE 'PENDIENTE' END, " +
+            "n.intentos = 0, n.proximoIntento = :ahora, n.procesadaEn = :ahora, n.estadoMp = :estadoMp, n.ultimoError = NULL " +
+            "WHERE n.id = :id")
+    int marcarProcesada(@Param("id") Long id, @Param("recepciones") int recepciones,
+                        @Param("estadoMp") String estadoMp, @Param("ahora") LocalDateTime ahora);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE NotificacionPago n SET n.estado = :estado, n.intentos = n.intentos + 1, " +
+            "n.proximoIntento = :proximoIntento, n.ultimoError = :error WHERE n.id = :id")
+    int registrarFallo(@Param("id") Long id, @Param("estado") String estado,
+                       @Param("proximoIntento") LocalDateTime proximoIntento, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM NotificacionPago n WHERE n.estado = 'PROCESADA' AND n.procesadaEn < :limite")
+    int eliminarProcesadasAntesDe(@Param("limite") LocalDateTime limite);
+}
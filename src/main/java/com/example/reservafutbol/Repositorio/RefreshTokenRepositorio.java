@@ -0,0 +1,40 @@
+package com.example.reservafutbol.Repositorio;
+
+import com.example.reservafutbol.Modelo.RefreshToken;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepositorio extends JpaRepository<RefreshToken, Long> {
+
+    // Bloquea la fila para que dos renovaciones simultáneas con el mismo token no emitan dos sucesores.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM RefreshToken t JOIN FETCH t.usuario WHERE t.tokenHash = :hash")
+    Optional<RefreshToken> findParaRotar(@Param("hash") String hash);
+
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.revocado = true WHERE t.familia = :familia AND t.revocado = false")
+    int revocarFamilia(@Param("familia") String familia);
+
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.revocado = true WHERE t.usuario.id = :usuarioId AND t.revocado = false")
+    int revocarPorUsuario(@Param("usuarioId") Long usuarioId);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.usuario.id = :usuarioId")
+    int eliminarPorUsuario(@Param("usuarioId") Long usuarioId);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.expiraEn < :limite")
+    int eliminarVencidos(@Param("limite") LocalDateTime limite);
+}
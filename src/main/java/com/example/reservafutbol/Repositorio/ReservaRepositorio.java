@@ -2,16 +2,23 @@ package com.example.reservafutbol.Repositorio;
 
 import com.example.reservafutbol.Modelo.Reserva;
 import com.example.reservafutbol.Modelo.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ReservaRepositorio extends JpaRepository<Reserva, Long> {
@@ -26,6 +33,122 @@ public interface ReservaRepositorio extends JpaRepository<Reserva, Long> {
             @Param("endTime") LocalDateTime endTime
     );
 
+    @Query("SELECT r FROM Reserva r WHERE r.complejo.id = :complejoId AND r.tipoCanchaReservada = :tipoCancha AND " +
+            "(r.estado = 'pendiente' OR r.estado = 'confirmada' OR r.estado = 'pagada' OR r.estado = 'pendiente_pago_efectivo' OR r.estado = 'pendiente_pago_mp') AND " +
+            "r.fechaHora >= :desde AND r.fechaHora < :hasta")
+    List<Reserva> findActivasPorComplejoYTipoEntre(
+            @Param("complejoId") Long complejoId,
+            @Param("tipoCancha") String tipoCancha,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta
+    );
+
+    @Query("SELECT r FROM Reserva r WHERE r.complejo.id = :complejoId AND " +
+            "(r.estado = 'pendiente' OR r.estado = 'confirmada' OR r.estado = 'pagada' OR r.estado = 'pendiente_pago_efectivo' OR r.estado = 'pendiente_pago_mp') AND " +
+            "r.fechaHora >= :desde AND r.fechaHora < :hasta")
+    List<Reserva> findActivasPorComplejoEntre(
+            @Param("complejoId") Long complejoId,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta
+    );
+
+    // Ocupación de un tipo de cancha en todos los complejos dentro de una ventana: solo complejo y horario, sin entidades.
+    @Query("SELECT r.complejo.id AS complejoId, r.tipoCanchaReservada AS tipoCancha, r.fechaHora AS fechaHora FROM Reserva r WHERE " +
+            "LOWER(r.tipoCanchaReservada) = LOWER(:tipoCancha) AND " +
+            "(r.estado = 'pendiente' OR r.estado = 'confirmada' OR r.estado = 'pagada' OR r.estado = 'pendiente_pago_efectivo' OR r.estado = 'pendiente_pago_mp') AND " +
+            "r.fechaHora >= :desde AND r.fechaHora < :hasta")
+    List<OcupacionSlot> findOcupacionPorTipoEntre(
+            @Param("tipoCancha") String tipoCancha,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta
+    );
+
+    interface OcupacionSlot {
+        Long getComplejoId();
+        String getTipoCancha();
+        LocalDateTime getFechaHora();
+    }
+
+    // Paginación por keyset sobre (fechaHora, id) descendente: cada página arranca estrictamente después del cursor,
+    // así el costo depende del tamaño de página y no de cuántas páginas se recorrieron.
+    String FILTRO_PAGINA = "r.fechaHora >= :desde AND r.fechaHora < :hasta " +
+            "AND (:todosLosEstados = true OR LOWER(r.estado) IN :estados) " +
+            "AND (r.fechaHora < :cursorFecha OR (r.fechaHora = :cursorFecha AND r.id < :cursorId)) " +
+            "ORDER BY r.fechaHora DESC, r.id DESC";
+
+    @EntityGraph(attributePaths = {"complejo"})
+    @Query("SELECT r FROM Reserva r WHERE " + FILTRO_PAGINA)
+    List<Reserva> findPagina(
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("todosLosEstados") boolean todosLosEstados,
+            @Param("estados") List<String> estados,
+            @Param("cursorFecha") LocalDateTime cursorFecha,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
+    );
+
+    @EntityGraph(attributePaths = {"complejo"})
+    @Query("SELECT r FROM Reserva r WHERE r.usuario = :usuario AND " + FILTRO_PAGINA)
+    List<Reserva> findPaginaPorUsuario(
+            @Param("usuario") User usuario,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("todosLosEstados") boolean todosLosEstados,
+            @Param("estados") List<String> estados,
+            @Param("cursorFecha") LocalDateTime cursorFecha,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
+    );
+
+    @EntityGraph(attributePaths = {"complejo"})
+    @Query("SELECT r FROM Reserva r WHERE r.complejo.id IN :complejoIds AND " + FILTRO_PAGINA)
+    List<Reserva> findPaginaPorComplejos(
+            @Param("complejoIds") List<Long> complejoIds,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("todosLosEstados") boolean todosLosEstados,
+            @Param("estados") List<String> estados,
+            @Param("cursorFecha") LocalDateTime cursorFecha,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
+    );
+
+    // Usa el índice idx_reservas_complejo_tipo_fecha.
+    @EntityGraph(attributePaths = {"complejo"})
+    @Query("SELECT r FROM Reserva r WHERE r.complejo.id = :complejoId AND r.tipoCanchaReservada = :tipoCancha AND " + FILTRO_PAGINA)
+    List<Reserva> findPaginaPorComplejoYTipo(
+            @Param("complejoId") Long complejoId,
+            @Param("tipoCancha") String tipoCancha,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("todosLosEstados") boolean todosLosEstados,
+            @Param("estados") List<String> estados,
+            @Param("cursorFecha") LocalDateTime cursorFecha,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
+    );
+
+    // Exportaciones: se recorren con un cursor del driver (fetch size) en lugar de materializar la lista completa.
+    // Deben consumirse dentro de una transacción; en Postgres el fetch size solo aplica con autocommit desactivado.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT r FROM Reserva r JOIN FETCH r.complejo WHERE r.fechaHora >= :desde AND r.fechaHora < :hasta " +
+            "ORDER BY r.fechaHora ASC, r.id ASC")
+    Stream<Reserva> streamParaExportar(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT r FROM Reserva r JOIN FETCH r.complejo WHERE r.complejo.id IN :complejoIds " +
+            "AND r.fechaHora >= :desde AND r.fechaHora < :hasta ORDER BY r.fechaHora ASC, r.id ASC")
+    Stream<Reserva> streamParaExportarPorComplejos(@Param("complejoIds") List<Long> complejoIds,
+                                                   @Param("desde") LocalDateTime desde,
+                                                   @Param("hasta") LocalDateTime hasta);
+
     @Query("SELECT r FROM Reserva r WHERE r.complejo.id = :complejoId AND r.tipoCanchaReservada = :tipoCancha AND " +
             "FUNCTION('DATE', r.fechaHora) = :fecha AND " +
             "(r.estado = 'pagada' OR r.estado = 'pendiente_pago_efectivo' OR r.estado = 'pendiente_pago_mp')")
@@ -35,6 +158,10 @@ public interface ReservaRepositorio extends JpaRepository<Reserva, Long> {
             @Param("fecha") LocalDate fecha
     );
 
+    // Advisory lock de Postgres ligado a la transacción actual: se libera solo con el commit o rollback.
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:clave)", nativeQuery = true)
+    Integer bloquearSlotHastaFinDeTransaccion(@Param("clave") long clave);
+
     @EntityGraph(attributePaths = {"usuario", "complejo"})
     List<Reserva> findByComplejoIdIn(List<Long> complejoIds);
 
@@ -44,7 +171,57 @@ public interface ReservaRepositorio extends JpaRepository<Reserva, Long> {
     @EntityGraph(attributePaths = {"usuario", "complejo"})
     List<Reserva> findByUsuario(User usuario);
 
-    Reserva findByPreferenceId(String preferenceId);
+    // Camino del webhook de Mercado Pago: búsquedas indexadas que traen solo las columnas que usa la transición de estado,
+    // sin cargar la entidad, su usuario ni su complejo.
+    String SELECT_PAGO = "SELECT r.id AS id, r.estado AS estado, r.pagada AS pagada, r.metodoPago AS metodoPago, " +
+            "r.mercadoPagoPaymentId AS mercadoPagoPaymentId, r.complejo.id AS complejoId, r.tipoCanchaReservada AS tipoCancha, " +
+            "r.nombreCanchaAsignada AS nombreCancha, r.fechaHora AS fechaHora, r.precio AS precio, " +
+            "r.pagoADevolver AS pagoADevolver FROM Reserva r ";
+
+    interface EstadoPago {
+        Long getId();
+        String getEstado();
+        Boolean getPagada();
+        String getMetodoPago();
+        String getMercadoPagoPaymentId();
+        Long getComplejoId();
+        String getTipoCancha();
+        String getNombreCancha();
+        LocalDateTime getFechaHora();
+        BigDecimal getPrecio();
+        Boolean getPagoADevolver();
+    }
+
+    @Query(SELECT_PAGO + "WHERE r.id = :id")
+    Optional<EstadoPago> findEstadoPagoPorId(@Param("id") Long id);
+
+    @Query(SELECT_PAGO + "WHERE r.preferenceId = :preferenceId")
+    List<EstadoPago> findEstadoPagoPorPreferenceId(@Param("preferenceId") String preferenceId);
+
+    @Query(SELECT_PAGO + "WHERE r.mercadoPagoPaymentId = :paymentId")
+    List<EstadoPago> findEstadoPagoPorPaymentId(@Param("paymentId") String paymentId);
+
+    // Páginas de la conciliación de pagos, por ID (keyset): reservas que siguen esperando a Mercado Pago.
+    @Query(SELECT_PAGO + "WHERE r.estado = 'pendiente_pago_mp' AND r.fechaHora >= :desde AND r.id > :despuesDeId ORDER BY r.id ASC")
+    List<EstadoPago> findPendientesPagoMercadoPago(@Param("desde") LocalDateTime desde, @Param("despuesDeId") Long despuesDeId,
+                                                  Pageable pageable);
+
+    // Update condicional: si la reserva cambió de estado desde que se leyó, no se toca y el llamador reintenta.
+    @Modifying
+    @Query("UPDATE Reserva r SET r.estado = :estado, r.pagada = :pagada, r.metodoPago = :metodoPago, " +
+            "r.mercadoPagoPaymentId = :paymentId, r.pagoADevolver = :pagoADevolver WHERE r.id = :id AND r.estado = :estadoAnterior")
+    int actualizarPago(@Param("id") Long id, @Param("estadoAnterior") String estadoAnterior, @Param("estado") String estado,
+                       @Param("pagada") Boolean pagada, @Param("metodoPago") String metodoPago, @Param("paymentId") String paymentId,
+                       @Param("pagoADevolver") Boolean pagoADevolver);
+
+    // Reservas de Mercado Pago anteriores a la columna fecha_creacion: su retención empieza a contar desde ahora.
+    @Modifying
+    @Query("UPDATE Reserva r SET r.fechaCreacion = :ahora WHERE r.estado = 'pendiente_pago_mp' AND r.fechaCreacion IS NULL")
+    int iniciarRetencionSinFecha(@Param("ahora") LocalDateTime ahora);
+
+    @Modifying
+    @Query("UPDATE Reserva r SET r.preferenceId = :preferenceId WHERE r.id = :id")
+    int asignarPreferenceId(@Param("id") Long id, @Param("preferenceId") String preferenceId);
 
     @Override
     @EntityGraph(attributePaths = {"usuario", "complejo"})
@@ -0,0 +1,109 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Repositorio.ReservaRepositorio;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Serializa la asignación de instancias de cancha por (complejo, tipo de cancha, día) hasta que termina la transacción.
+// Dentro de la instancia usa locks rayados (striped) para no serializar complejos no relacionados, y entre
+// instancias de la aplicación un advisory lock de Postgres que se libera solo con el commit/rollback.
+@Service
+public class BloqueoSlotsReserva {
+
+    private static final Logger log = LoggerFactory.getLogger(BloqueoSlotsReserva.class);
+
+    private static final int SLOT_DURATION_MINUTES = 60;
+
+    @Autowired
+    private ReservaRepositorio reservaRepositorio;
+
+    @Value("${reservas.bloqueo.stripes:1024}")
+    private int cantidadStripes;
+
+    @Value("${reservas.bloqueo.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${reservas.bloqueo.advisory-lock:true}")
+    private boolean usarAdvisoryLock;
+
+    private ReentrantLock[] stripes;
+
+    @PostConstruct
+    public void init() {
+        stripes = new ReentrantLock[cantidadStripes];
+        for (int i = 0; i < cantidadStripes; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // Bloquea todos los días que puede tocar una reserva que empieza en 'inicio' (una reserva de las 23:30 compite
+    // con la de las 00:00 del día siguiente). Debe llamarse dentro de una transacción: los locks se liberan al terminarla.
+    public void bloquearHastaFinDeTransaccion(Long complejoId, String tipoCancha, LocalDateTime inicio) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("El bloqueo de slots requiere una transacción activa.");
+        }
+
+        List<Long> claves = new ArrayList<>();
+        LocalDate primerDia = inicio.minusMinutes(SLOT_DURATION_MINUTES - 1).toLocalDate();
+        LocalDate ultimoDia = inicio.plusMinutes(SLOT_DURATION_MINUTES - 1).toLocalDate();
+        for (LocalDate fecha = primerDia; !fecha.isAfter(ultimoDia); fecha = fecha.plusDays(1)) {
+            claves.add(clave(complejoId, tipoCancha, fecha));
+        }
+
+        // Orden fijo de adquisición para evitar deadlocks cuando se toman dos días.
+        TreeSet<Integer> indices = new TreeSet<>();
+        for (Long clave : claves) {
+            indices.add(Math.floorMod(clave, stripes.length));
+        }
+
+        List<ReentrantLock> adquiridos = new ArrayList<>();
+        try {
+            for (Integer indice : indices) {
+                ReentrantLock lock = stripes[indice];
+                if (!lock.tryLock(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    log.warn("Timeout esperando el bloqueo de slot para complejo {} tipo '{}' en {}.", complejoId, tipoCancha, inicio);
+                    throw new IllegalStateException("Hay mucha demanda para este horario en este momento. Por favor, intenta nuevamente.");
+                }
+                adquiridos.add(lock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            adquiridos.forEach(ReentrantLock::unlock);
+            throw new IllegalStateException("Se interrumpió la espera del bloqueo de slot.", e);
+        } catch (RuntimeException e) {
+            adquiridos.forEach(ReentrantLock::unlock);
+            throw e;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                adquiridos.forEach(ReentrantLock::unlock);
+            }
+        });
+
+        if (usarAdvisoryLock) {
+            claves.stream().sorted().forEach(reservaRepositorio::bloquearSlotHastaFinDeTransaccion);
+        }
+    }
+
+    private static long clave(Long complejoId, String tipoCancha, LocalDate fecha) {
+        long hash = Objects.hash(complejoId, tipoCancha, fecha);
+        return (complejoId << 32) ^ (hash & 0xffffffffL);
+    }
+}
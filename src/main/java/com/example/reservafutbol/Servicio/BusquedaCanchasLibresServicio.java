@@ -0,0 +1,139 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.DTO.FiltroBusquedaComplejos;
+import com.example.reservafutbol.Repositorio.ReservaRepositorio;
+import com.example.reservafutbol.payload.response.CanchaLibreDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Busca canchas libres de un tipo en todos los complejos para una fecha y franja horaria.
+// Los complejos candidatos salen del índice de búsqueda y la ocupación de una sola consulta por la franja,
+// así el costo no crece con complejos × horarios como al consultar slot por slot.
+@Service
+public class BusquedaCanchasLibresServicio {
+
+    private static final Logger log = LoggerFactory.getLogger(BusquedaCanchasLibresServicio.class);
+
+    private static final int SLOT_DURATION_MINUTES = 60;
+    private static final ZoneId ARGENTINA_ZONE_ID = ZoneId.of("America/Argentina/Buenos_Aires");
+    public static final int MAX_RESULTADOS = 200;
+
+    @Autowired
+    private IndiceBusquedaComplejos indiceBusqueda;
+
+    @Autowired
+    private ReservaRepositorio reservaRepositorio;
+
+    private record Candidato(IndiceBusquedaComplejos.TipoDeComplejo tipoDeComplejo, List<LocalTime> slots, int[] ocupadas) {
+    }
+
+    @Transactional(readOnly = true)
+    public List<CanchaLibreDTO> buscar(LocalDate fecha, LocalTime horaDesde, LocalTime horaHasta, FiltroBusquedaComplejos filtro) {
+        if (fecha == null) {
+            throw new IllegalArgumentException("La fecha es obligatoria.");
+        }
+        if (filtro.getTipoCancha() == null || filtro.getTipoCancha().isBlank()) {
+            throw new IllegalArgumentException("El tipo de cancha es obligatorio.");
+        }
+        LocalTime desde = horaDesde != null ? horaDesde : LocalTime.MIN;
+        LocalTime hasta = horaHasta != null ? horaHasta : LocalTime.of(23, 59);
+        if (hasta.isBefore(desde)) {
+            throw new IllegalArgumentException("La hora 'hasta' no puede ser anterior a 'desde'.");
+        }
+        int limite = filtro.getLimite() <= 0 ? 20 : Math.min(filtro.getLimite(), MAX_RESULTADOS);
+
+        Map<Long, Candidato> candidatos = new HashMap<>();
+        for (IndiceBusquedaComplejos.TipoDeComplejo tipoDeComplejo : indiceBusqueda.filtrar(filtro)) {
+            List<LocalTime> slots = slotsEnFranja(tipoDeComplejo.documento(), desde, hasta);
+            if (!slots.isEmpty()) {
+                candidatos.put(tipoDeComplejo.documento().id(),
+                        new Candidato(tipoDeComplejo, slots, new int[slots.size()]));
+            }
+        }
+        if (candidatos.isEmpty()) {
+            return List.of();
+        }
+
+        // Una sola pasada sobre las reservas activas de la franja; se incluye la hora previa porque una reserva
+        // de las 20:30 ocupa el slot de las 21:00. La memoria queda acotada a un contador por slot y candidato.
+        List<ReservaRepositorio.OcupacionSlot> ocupacion = reservaRepositorio.findOcupacionPorTipoEntre(
+                filtro.getTipoCancha(),
+                fecha.atTime(desde).minusMinutes(SLOT_DURATION_MINUTES),
+                fecha.atTime(hasta).plusMinutes(SLOT_DURATION_MINUTES));
+        for (ReservaRepositorio.OcupacionSlot reserva : ocupacion) {
+            Candidato candidato = candidatos.get(reserva.getComplejoId());
+            if (candidato == null || !candidato.tipoDeComplejo().tipo().tipo().equals(reserva.getTipoCancha())) {
+                continue;
+            }
+            LocalDateTime inicioReserva = reserva.getFechaHora();
+            LocalDateTime finReserva = inicioReserva.plusMinutes(SLOT_DURATION_MINUTES);
+            for (int i = 0; i < candidato.slots().size(); i++) {
+                LocalDateTime inicioSlot = fecha.atTime(candidato.slots().get(i));
+                if (inicioReserva.isBefore(inicioSlot.plusMinutes(SLOT_DURATION_MINUTES)) && finReserva.isAfter(inicioSlot)) {
+                    candidato.ocupadas()[i]++;
+                }
+            }
+        }
+
+        LocalDateTime ahora = ZonedDateTime.now(ARGENTINA_ZONE_ID).toLocalDateTime();
+        List<CanchaLibreDTO> resultados = new ArrayList<>();
+        for (Candidato candidato : candidatos.values()) {
+            IndiceBusquedaComplejos.Documento complejo = candidato.tipoDeComplejo().documento();
+            IndiceBusquedaComplejos.TipoIndexado tipo = candidato.tipoDeComplejo().tipo();
+            Map<String, Integer> libres = new LinkedHashMap<>();
+            for (int i = 0; i < candidato.slots().size(); i++) {
+                LocalTime slot = candidato.slots().get(i);
+                int disponibles = tipo.cantidad() - candidato.ocupadas()[i];
+                if (disponibles > 0 && !fecha.atTime(slot).plusMinutes(SLOT_DURATION_MINUTES).isBefore(ahora)) {
+                    libres.put(slot.toString(), disponibles);
+                }
+            }
+            if (!libres.isEmpty()) {
+                resultados.add(new CanchaLibreDTO(complejo.id(), complejo.nombre(), complejo.ubicacion(), complejo.portadaUrl(),
+                        tipo.tipo(), tipo.precio(), libres));
+            }
+        }
+
+        // Más baratos primero; a igual precio, los que tienen más horarios libres en la franja.
+        resultados.sort(Comparator.comparing(CanchaLibreDTO::getPrecioPorHora, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(c -> -c.getHorariosLibres().size())
+                .thenComparing(CanchaLibreDTO::getNombre, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)));
+        log.debug("Búsqueda de canchas libres {} el {} entre {} y {}: {} candidatos, {} reservas leídas, {} con lugar.",
+                filtro.getTipoCancha(), fecha, desde, hasta, candidatos.size(), ocupacion.size(), resultados.size());
+        return resultados.size() > limite ? new ArrayList<>(resultados.subList(0, limite)) : resultados;
+    }
+
+    // Slots del complejo (alineados a su apertura, igual que la grilla de disponibilidad) que empiezan dentro de la franja.
+    private static List<LocalTime> slotsEnFranja(IndiceBusquedaComplejos.Documento complejo, LocalTime desde, LocalTime hasta) {
+        List<LocalTime> slots = new ArrayList<>();
+        LocalTime apertura = complejo.horarioApertura();
+        LocalTime cierre = complejo.horarioCierre();
+        if (apertura == null || cierre == null) {
+            return slots;
+        }
+        // Un cierre igual o anterior a la apertura (por ej. 00:00) se interpreta como fin del día.
+        int minutosCierre = cierre.isAfter(apertura) ? cierre.toSecondOfDay() / 60 : 24 * 60;
+        for (int minuto = apertura.toSecondOfDay() / 60; minuto + SLOT_DURATION_MINUTES <= minutosCierre; minuto += SLOT_DURATION_MINUTES) {
+            LocalTime slot = LocalTime.of(minuto / 60, minuto % 60);
+            if (!slot.isBefore(desde) && !slot.isAfter(hasta)) {
+                slots.add(slot);
+            }
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Modelo.Complejo;
+import com.example.reservafutbol.Repositorio.ComplejoRepositorio;
+import com.example.reservafutbol.payload.response.ComplejoResponseDTO;
+import com.example.reservafutbol.payload.response.ComplejoResumenDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+// Cache de lectura del catálogo público de complejos (GET /api/complejos, /api/complejos/resumen y /api/complejos/{id}).
+// Guarda DTOs ya armados, no entidades, así las respuestas no vuelven a cargar los @ElementCollection ni el propietario.
+// ComplejoServicio invalida después de cada commit que modifica un complejo; el TTL cubre cambios hechos por fuera.
+@Service
+public class CatalogoComplejosCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogoComplejosCache.class);
+
+    private static final String CLAVE_TODOS = "todos";
+
+    @Autowired
+    private ComplejoRepositorio complejoRepositorio;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${complejos.cache.max-entradas:1000}")
+    private long maxEntradas;
+
+    @Value("${complejos.cache.ttl-segundos:600}")
+    private long ttlSegundos;
+
+    private Cache<Long, ComplejoResponseDTO> porId;
+    private Cache<String, List<ComplejoResponseDTO>> todos;
+    private Cache<String, ResumenCatalogo> resumen;
+    private TransactionTemplate transaccionLectura;
+
+    // Última versión servida del resumen. Last-Modified solo avanza cuando cambia el contenido, no en cada recarga.
+    private String ultimoEtag;
+    private long ultimaModificacion = System.currentTimeMillis() / 1000 * 1000;
+
+    // Resumen con su versión para revalidación HTTP (ETag / Last-Modified).
+    public record ResumenCatalogo(List<ComplejoResumenDTO> complejos, String etag, long ultimaModificacion) {
+    }
+
+    @PostConstruct
+    public void init() {
+        porId = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats()
+                .build();
+        todos = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats()
+                .build();
+        resumen = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, porId, "complejos.porId");
+        CaffeineCacheMetrics.monitor(meterRegistry, todos, "complejos.todos");
+        CaffeineCacheMetrics.monitor(meterRegistry, resumen, "complejos.resumen");
+
+        transaccionLectura = new TransactionTemplate(transactionManager);
+        transaccionLectura.setReadOnly(true);
+    }
+
+    // Los DTOs devueltos se comparten entre requests: no deben modificarse.
+    public Optional<ComplejoResponseDTO> obtener(Long id) {
+        return Optional.ofNullable(porId.get(id, this::cargarDetalle));
+    }
+
+    public List<ComplejoResponseDTO> listarTodos() {
+        return todos.get(CLAVE_TODOS, clave -> cargarTodos());
+    }
+
+    public ResumenCatalogo obtenerResumen() {
+        return resumen.get(CLAVE_TODOS, clave -> cargarResumen());
+    }
+
+    public void invalidar(Long complejoId) {
+        TransaccionUtil.despuesDelCommit(() -> {
+            if (complejoId != null) {
+                porId.invalidate(complejoId);
+            }
+            todos.invalidateAll();
+            resumen.invalidateAll();
+            log.debug("Cache del catálogo de complejos invalidada (complejo {}).", complejoId);
+        });
+    }
+
+    private ComplejoResponseDTO cargarDetalle(Long id) {
+        return transaccionLectura.execute(status -> complejoRepositorio.findById(id)
+                .map(complejo -> {
+                    ComplejoResponseDTO dto = aDto(complejo);
+                    // El detalle usa la portada en resolución original; el listado, la miniatura.
+                    if (complejo.getFotoUrlsPorResolucion() != null) {
+                        dto.setPortadaUrl(complejo.getFotoUrlsPorResolucion().get("original"));
+                    }
+                    return dto;
+                })
+                .orElse(null));
+    }
+
+    private List<ComplejoResponseDTO> cargarTodos() {
+        List<ComplejoResponseDTO> dtos = transaccionLectura.execute(status -> complejoRepositorio.findAll().stream()
+                .map(CatalogoComplejosCache::aDto)
+                .collect(Collectors.toList()));
+        log.info("Catálogo de complejos cargado en cache: {} complejos.", dtos != null ? dtos.size() : 0);
+        return dtos != null ? Collections.unmodifiableList(dtos) : Collections.emptyList();
+    }
+
+    private ResumenCatalogo cargarResumen() {
+        List<ComplejoResumenDTO> complejos = complejoRepositorio.findResumenes().stream()
+                .map(r -> new ComplejoResumenDTO(r.getId(), r.getNombre(), r.getUbicacion(), r.getPortadaUrl(), r.getPrecioMinimo()))
+                .collect(Collectors.toUnmodifiableList());
+        String etag = calcularEtag(complejos);
+        synchronized (this) {
+            if (!etag.equals(ultimoEtag)) {
+                ultimoEtag = etag;
+                // Los encabezados HTTP de fecha tienen precisión de segundos.
+                ultimaModificacion = System.currentTimeMillis() / 1000 * 1000;
+            }
+            return new ResumenCatalogo(complejos, etag, ultimaModificacion);
+        }
+    }
+
+    private static String calcularEtag(List<ComplejoResumenDTO> complejos) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (ComplejoResumenDTO c : complejos) {
+                String fila = c.getId() + "|" + c.getNombre() + "|" + c.getUbicacion() + "|" + c.getPortadaUrl() + "|" + c.getPrecioMinimo() + "\n";
+                digest.update(fila.getBytes(StandardCharsets.UTF_8));
+            }
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible.", e);
+        }
+    }
+
+    // Copia los mapas para no retener colecciones de Hibernate ni exponerlas a modificaciones.
+    private static ComplejoResponseDTO aDto(Complejo complejo) {
+        ComplejoResponseDTO dto = new ComplejoResponseDTO(complejo);
+        dto.setCarruselUrls(copiar(dto.getCarruselUrls()));
+        dto.setCanchaCounts(copiar(dto.getCanchaCounts()));
+        dto.setCanchaPrices(copiar(dto.getCanchaPrices()));
+        dto.setCanchaSurfaces(copiar(dto.getCanchaSurfaces()));
+        dto.setCanchaIluminacion(copiar(dto.getCanchaIluminacion()));
+        dto.setCanchaTecho(copiar(dto.getCanchaTecho()));
+        return dto;
+    }
+
+    private static <K, V> Map<K, V> copiar(Map<K, V> mapa) {
+        return mapa != null ? Collections.unmodifiableMap(new HashMap<>(mapa)) : null;
+    }
+
+    private static <T> List<T> copiar(List<T> lista) {
+        return lista != null ? List.copyOf(lista) : null;
+    }
+}
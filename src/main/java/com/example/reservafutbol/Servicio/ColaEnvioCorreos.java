@@ -0,0 +1,223 @@
+package com.example.reservafutbol.Servicio;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Cola de salida de correos. Un número fijo de workers toma los mensajes en lotes y los envía por una conexión
+// SMTP que mantienen abierta entre lotes, así cada email no paga un handshake SMTP + STARTTLS completo.
+// La cola es acotada: ante un pico (por ejemplo, de registros) se rechaza el mensaje en vez de acumular hilos.
+@Service
+public class ColaEnvioCorreos {
+
+    private static final Logger log = LoggerFactory.getLogger(ColaEnvioCorreos.class);
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mail.cola.capacidad:1000}")
+    private int capacidad;
+
+    @Value("${mail.cola.workers:2}")
+    private int cantidadWorkers;
+
+    @Value("${mail.cola.lote:20}")
+    private int tamanioLote;
+
+    // SendGrid corta las conexiones ociosas; se cierran antes para no enviar sobre un socket muerto.
+    @Value("${mail.cola.inactividad-ms:20000}")
+    private long inactividadMs;
+
+    private BlockingQueue<CorreoPendiente> cola;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean activo = true;
+
+    private Counter enviados;
+    private Counter fallidos;
+    private Counter rechazados;
+    private Counter conexionesCreadas;
+    private final AtomicInteger conexionesAbiertas = new AtomicInteger();
+    private Timer duracionLote;
+
+    // Resultado de un correo encolado. Cancelarlo solo tiene efecto mientras ningún worker lo tomó: se saca de la cola
+    // y no se envía. Una vez tomado, el resultado es el del envío real.
+    private final class CorreoPendiente extends CompletableFuture<Void> {
+        private final MimeMessage mensaje;
+        private final AtomicBoolean tomado = new AtomicBoolean();
+
+        private CorreoPendiente(MimeMessage mensaje) {
+            this.mensaje = mensaje;
+        }
+
+        private boolean tomar() {
+            return tomado.compareAndSet(false, true);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!tomar()) {
+                return false;
+            }
+            cola.remove(this);
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        cola = new ArrayBlockingQueue<>(capacidad);
+        enviados = Counter.builder("mail.enviados").description("Correos aceptados por el servidor SMTP").register(meterRegistry);
+        fallidos = Counter.builder("mail.fallidos").description("Correos que no se pudieron enviar").register(meterRegistry);
+        rechazados = Counter.builder("mail.cola.rechazados").description("Correos rechazados por cola llena").register(meterRegistry);
+        conexionesCreadas = Counter.builder("mail.conexiones.creadas").description("Conexiones SMTP establecidas").register(meterRegistry);
+        Gauge.builder("mail.conexiones.abiertas", conexionesAbiertas, AtomicInteger::get).description("Conexiones SMTP abiertas").register(meterRegistry);
+        duracionLote = Timer.builder("mail.lote.duracion").description("Tiempo de envío de cada lote").register(meterRegistry);
+        Gauge.builder("mail.cola.pendientes", cola, BlockingQueue::size).description("Correos esperando envío").register(meterRegistry);
+
+        for (int i = 0; i < cantidadWorkers; i++) {
+            Thread worker = new Thread(this::procesarCola, "mail-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        activo = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    // El llamador puede cancelar el resultado (cancel) para retirar el mensaje si todavía no se empezó a enviar.
+    public CompletableFuture<Void> enviar(MimeMessage mensaje) {
+        CorreoPendiente correo = new CorreoPendiente(mensaje);
+        if (!activo || !cola.offer(correo)) {
+            rechazados.increment();
+            correo.completeExceptionally(new MessagingException("La cola de correo está llena. Intenta nuevamente en unos minutos."));
+        }
+        return correo;
+    }
+
+    private void procesarCola() {
+        Transport transport = null;
+        List<CorreoPendiente> lote = new ArrayList<>(tamanioLote);
+        while (activo) {
+            try {
+                CorreoPendiente primero = cola.poll(inactividadMs, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    transport = cerrar(transport);
+                    continue;
+                }
+                lote.add(primero);
+                cola.drainTo(lote, tamanioLote - 1);
+
+                Timer.Sample muestra = Timer.start(meterRegistry);
+                for (CorreoPendiente correo : lote) {
+                    if (correo.tomar()) {
+                        transport = enviarPorConexion(transport, correo);
+                    }
+                }
+                muestra.stop(duracionLote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                lote.clear();
+            }
+        }
+        cerrar(transport);
+        // Lo que quedó en la cola al apagar se informa como fallido para no dejar a nadie esperando.
+        CorreoPendiente pendiente;
+        while ((pendiente = cola.poll()) != null) {
+            pendiente.completeExceptionally(new MessagingException("El servicio de correo se está deteniendo."));
+        }
+    }
+
+    private Transport enviarPorConexion(Transport transport, CorreoPendiente correo) {
+        for (int intento = 1; ; intento++) {
+            try {
+                if (transport == null || !transport.isConnected()) {
+                    transport = cerrar(transport);
+                    transport = conectar();
+                }
+                MimeMessage mensaje = correo.mensaje;
+                if (mensaje.getSentDate() == null) {
+                    mensaje.setSentDate(new Date());
+                }
+                mensaje.saveChanges();
+                transport.sendMessage(mensaje, mensaje.getAllRecipients());
+                enviados.increment();
+                correo.complete(null);
+                return transport;
+            } catch (SendFailedException e) {
+                // El servidor rechazó este mensaje puntual; la conexión sigue sirviendo para el resto del lote.
+                fallidos.increment();
+                correo.completeExceptionally(e);
+                return transport;
+            } catch (MessagingException | RuntimeException e) {
+                // Conexión caída o vencida: se reabre y se reintenta una vez.
+                transport = cerrar(transport);
+                if (intento >= 2) {
+                    log.error("Error de conexión SMTP al enviar correo: {}", e.getMessage());
+                    fallidos.increment();
+                    correo.completeExceptionally(e);
+                    return null;
+                }
+                log.warn("Conexión SMTP perdida ({}). Reconectando.", e.getMessage());
+            }
+        }
+    }
+
+    private Transport conectar() throws MessagingException {
+        Transport transport;
+        if (mailSender instanceof JavaMailSenderImpl impl) {
+            transport = impl.getSession().getTransport(impl.getProtocol() != null ? impl.getProtocol() : "smtp");
+            transport.connect(impl.getHost(), impl.getPort(), impl.getUsername(), impl.getPassword());
+        } else {
+            throw new IllegalStateException("ColaEnvioCorreos requiere un JavaMailSenderImpl.");
+        }
+        conexionesCreadas.increment();
+        conexionesAbiertas.incrementAndGet();
+        log.debug("Conexión SMTP abierta por {}.", Thread.currentThread().getName());
+        return transport;
+    }
+
+    private Transport cerrar(Transport transport) {
+        if (transport != null) {
+            conexionesAbiertas.decrementAndGet();
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Error al cerrar la conexión SMTP: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+}
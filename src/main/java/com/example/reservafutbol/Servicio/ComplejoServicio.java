@@ -29,6 +29,18 @@ public class ComplejoServicio {
     @Autowired
     private S3StorageService s3StorageService;
 
+    @Autowired
+    private OcupacionCanchasIndice ocupacionIndice;
+
+    @Autowired
+    private CatalogoComplejosCache catalogoComplejos;
+
+    @Autowired
+    private IndiceBusquedaComplejos indiceBusqueda;
+
+    @Autowired
+    private EstadoUsuariosCache estadoUsuarios;
+
     @Transactional
     public Complejo crearComplejo(Complejo complejo, String propietarioUsername) {
         log.info("Creando nuevo complejo (detallado): {} para propietario: {}", complejo.getNombre(), propietarioUsername);
@@ -49,7 +61,11 @@ public class ComplejoServicio {
         if (complejo.getCanchaIluminacion() == null) complejo.setCanchaIluminacion(new HashMap<>());
         if (complejo.getCanchaTecho() == null) complejo.setCanchaTecho(new HashMap<>());
 
-        return complejoRepositorio.save(complejo);
+        Complejo guardado = complejoRepositorio.save(complejo);
+        catalogoComplejos.invalidar(guardado.getId());
+        indiceBusqueda.reindexar(guardado.getId());
+        estadoUsuarios.invalidar(propietarioUsername);
+        return guardado;
     }
 
     @Transactional
@@ -112,7 +128,11 @@ public class ComplejoServicio {
         nuevoComplejo.setCanchaIluminacion(canchaIluminacion != null ? new HashMap<>(canchaIluminacion) : new HashMap<>());
         nuevoComplejo.setCanchaTecho(canchaTecho != null ? new HashMap<>(canchaTecho) : new HashMap<>());
 
-        return complejoRepositorio.save(nuevoComplejo);
+        Complejo guardado = complejoRepositorio.save(nuevoComplejo);
+        catalogoComplejos.invalidar(guardado.getId());
+        indiceBusqueda.reindexar(guardado.getId());
+        estadoUsuarios.invalidar(propietarioUsername);
+        return guardado;
     }
 
     @Transactional(readOnly = true)
@@ -220,6 +240,9 @@ public class ComplejoServicio {
         complejoExistente.setCanchaIluminacion(complejoDetails.getCanchaIluminacion() != null ? new HashMap<>(complejoDetails.getCanchaIluminacion()) : new HashMap<>());
         complejoExistente.setCanchaTecho(complejoDetails.getCanchaTecho() != null ? new HashMap<>(complejoDetails.getCanchaTecho()) : new HashMap<>());
 
+        ocupacionIndice.invalidarComplejo(id);
+        catalogoComplejos.invalidar(id);
+        indiceBusqueda.reindexar(id);
         return complejoRepositorio.save(complejoExistente);
     }
 
@@ -251,6 +274,12 @@ public class ComplejoServicio {
         }
 
         complejoRepositorio.deleteById(id);
+        ocupacionIndice.invalidarComplejo(id);
+        catalogoComplejos.invalidar(id);
+        indiceBusqueda.reindexar(id);
+        if (complejoExistente.getPropietario() != null) {
+            estadoUsuarios.invalidar(complejoExistente.getPropietario().getUsername());
+        }
         log.info("Complejo con ID {} eliminado exitosamente.", id);
     }
 }
\ No newline at end of file
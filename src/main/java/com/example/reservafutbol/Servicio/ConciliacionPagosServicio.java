@@ -0,0 +1,193 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Repositorio.ReservaRepositorio;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Red de seguridad para los webhooks de Mercado Pago que nunca llegaron: recorre las reservas que siguen en
+// 'pendiente_pago_mp', busca sus pagos en MP (external_reference = ID de reserva) y aplica los cambios de a una página
+// por vez, en un solo batch de UPDATE. Las consultas salen con concurrencia propia y un ritmo máximo por segundo, así
+// nunca ocupan los lugares del límite de PagoServicio que necesita el procesador de notificaciones.
+@Service
+public class ConciliacionPagosServicio {
+
+    private static final Logger log = LoggerFactory.getLogger(ConciliacionPagosServicio.class);
+
+    @Autowired
+    private ReservaRepositorio reservaRepositorio;
+
+    @Autowired
+    private ReservaServicio reservaServicio;
+
+    @Autowired
+    private PagoServicio pagoServicio;
+
+    @Value("${conciliacion.pagos.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${conciliacion.pagos.lote:100}")
+    private int tamanioLote;
+
+    @Value("${conciliacion.pagos.concurrencia:2}")
+    private int concurrencia;
+
+    @Value("${conciliacion.pagos.consultas-por-segundo:5}")
+    private double consultasPorSegundo;
+
+    // Corta la pasada para que una acumulación grande se reparta en varias y no ocupe el scheduler por mucho tiempo.
+    @Value("${conciliacion.pagos.max-reservas-por-pasada:1000}")
+    private int maxReservasPorPasada;
+
+    // Solo se concilian reservas cuyo turno empieza a partir de hoy menos estos días; las viejas ya no importan.
+    @Value("${conciliacion.pagos.dias-atras:7}")
+    private long diasAtras;
+
+    private ExecutorService executor;
+    private long intervaloNanos;
+    private long proximoTurno;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(concurrencia);
+        intervaloNanos = consultasPorSegundo > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / consultasPorSegundo) : 0;
+        proximoTurno = System.nanoTime();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${conciliacion.pagos.intervalo-ms:300000}",
+            initialDelayString = "${conciliacion.pagos.demora-inicial-ms:60000}")
+    public void conciliarProgramado() {
+        if (!habilitada) {
+            return;
+        }
+        try {
+            conciliar();
+        } catch (Exception e) {
+            log.error("Error en la conciliación programada de pagos de Mercado Pago: {}", e.getMessage(), e);
+        }
+    }
+
+    // Devuelve cuántas reservas se actualizaron en la pasada.
+    public int conciliar() {
+        LocalDateTime desde = LocalDateTime.now().minusDays(diasAtras);
+        long inicio = System.currentTimeMillis();
+        long despuesDeId = 0;
+        int revisadas = 0;
+        int actualizadas = 0;
+        while (revisadas < maxReservasPorPasada) {
+            int lote = Math.min(tamanioLote, maxReservasPorPasada - revisadas);
+            List<ReservaRepositorio.EstadoPago> pendientes =
+                    reservaRepositorio.findPendientesPagoMercadoPago(desde, despuesDeId, PageRequest.of(0, lote));
+            if (pendientes.isEmpty()) {
+                break;
+            }
+            List<ReservaServicio.PagoConciliado> pagos = consultarPagos(pendientes);
+            if (!pagos.isEmpty()) {
+                actualizadas += reservaServicio.aplicarPagosConciliados(pagos);
+            }
+            revisadas += pendientes.size();
+            despuesDeId = pendientes.get(pendientes.size() - 1).getId();
+            if (pendientes.size() < lote || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+        if (revisadas > 0) {
+            log.info("Conciliación de pagos de Mercado Pago: {} reservas revisadas, {} actualizadas en {} ms.",
+                    revisadas, actualizadas, System.currentTimeMillis() - inicio);
+        }
+        return actualizadas;
+    }
+
+    private List<ReservaServicio.PagoConciliado> consultarPagos(List<ReservaRepositorio.EstadoPago> pendientes) {
+        List<Future<ReservaServicio.PagoConciliado>> consultas = new ArrayList<>(pendientes.size());
+        for (ReservaRepositorio.EstadoPago reserva : pendientes) {
+            consultas.add(executor.submit(() -> consultarPago(reserva)));
+        }
+        List<ReservaServicio.PagoConciliado> pagos = new ArrayList<>();
+        for (Future<ReservaServicio.PagoConciliado> consulta : consultas) {
+            try {
+                ReservaServicio.PagoConciliado pago = consulta.get();
+                if (pago != null) {
+                    pagos.add(pago);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                consultas.forEach(c -> c.cancel(true));
+                break;
+            } catch (ExecutionException e) {
+                log.error("Error inesperado consultando un pago para conciliar: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return pagos;
+    }
+
+    // Un error en una reserva no corta la página: esa reserva queda pendiente y se vuelve a consultar en la próxima pasada.
+    private ReservaServicio.PagoConciliado consultarPago(ReservaRepositorio.EstadoPago reserva) throws InterruptedException {
+        esperarTurno();
+        try {
+            JsonNode pago = elegirPago(pagoServicio.buscarPagosPorReferencia(String.valueOf(reserva.getId())));
+            if (pago == null) {
+                return null;
+            }
+            return new ReservaServicio.PagoConciliado(reserva, pago.get("id").asText(), pago.get("status").asText());
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("No se pudo consultar a Mercado Pago los pagos de la reserva {}: {}", reserva.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    // Un pago aprobado manda sobre los demás intentos (rechazados, pendientes); si no hay, vale el más reciente.
+    // Los resultados llegan ordenados del más reciente al más antiguo.
+    private static JsonNode elegirPago(JsonNode resultados) {
+        JsonNode masReciente = null;
+        for (JsonNode pago : resultados) {
+            if (!pago.hasNonNull("id") || !pago.hasNonNull("status")) {
+                continue;
+            }
+            if ("approved".equals(pago.get("status").asText())) {
+                return pago;
+            }
+            if (masReciente == null) {
+                masReciente = pago;
+            }
+        }
+        return masReciente;
+    }
+
+    // Reparte las consultas a un ritmo fijo entre todos los hilos: cada una toma el próximo turno libre y espera hasta él.
+    private void esperarTurno() throws InterruptedException {
+        long espera;
+        synchronized (this) {
+            long ahora = System.nanoTime();
+            long turno = Math.max(ahora, proximoTurno);
+            proximoTurno = turno + intervaloNanos;
+            espera = turno - ahora;
+        }
+        if (espera > 0) {
+            TimeUnit.NANOSECONDS.sleep(espera);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Modelo.NotificacionOutbox;
+import com.example.reservafutbol.Modelo.Reserva;
+import com.example.reservafutbol.Repositorio.NotificacionOutboxRepositorio;
+import com.example.reservafutbol.Repositorio.ReservaRepositorio;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Envía en segundo plano las notificaciones guardadas en notificaciones_outbox, con concurrencia acotada
+// y reintentos con backoff exponencial. Así la latencia de una reserva no depende del servidor SMTP.
+@Service
+public class DespachadorNotificaciones {
+
+    private static final Logger log = LoggerFactory.getLogger(DespachadorNotificaciones.class);
+
+    @Autowired
+    private NotificacionOutboxRepositorio outboxRepositorio;
+
+    @Autowired
+    private ReservaRepositorio reservaRepositorio;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Value("${notificaciones.outbox.concurrencia:4}")
+    private int concurrencia;
+
+    @Value("${notificaciones.outbox.lote:50}")
+    private int tamanioLote;
+
+    @Value("${notificaciones.outbox.max-intentos:8}")
+    private int maxIntentos;
+
+    @Value("${notificaciones.outbox.backoff-inicial-segundos:30}")
+    private long backoffInicialSegundos;
+
+    @Value("${notificaciones.outbox.backoff-maximo-segundos:3600}")
+    private long backoffMaximoSegundos;
+
+    // Si un envío queda 'ENVIANDO' más que esto (por ejemplo, porque la instancia se reinició), se vuelve a tomar.
+    @Value("${notificaciones.outbox.vencimiento-envio-segundos:300}")
+    private long vencimientoEnvioSegundos;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(concurrencia);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // fixedDelay: una pasada no empieza hasta que termina la anterior, así el lote nunca supera la concurrencia configurada.
+    @Scheduled(fixedDelayString = "${notificaciones.outbox.intervalo-ms:2000}")
+    public void procesarPendientes() {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Long> ids = outboxRepositorio.findIdsListosParaEnviar(ahora, PageRequest.of(0, tamanioLote));
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        List<Future<?>> envios = new ArrayList<>();
+        for (Long id : ids) {
+            if (outboxRepositorio.reclamar(id, ahora, ahora.plusSeconds(vencimientoEnvioSegundos)) == 1) {
+                envios.add(executor.submit(() -> enviar(id)));
+            }
+        }
+        for (Future<?> envio : envios) {
+            try {
+                envio.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Error inesperado despachando notificación: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+        log.debug("Pasada del despachador de notificaciones: {} notificaciones procesadas.", envios.size());
+    }
+
+    private void enviar(Long id) {
+        Optional<NotificacionOutbox> notificacionOpt = outboxRepositorio.findById(id);
+        if (notificacionOpt.isEmpty()) {
+            return;
+        }
+        NotificacionOutbox notificacion = notificacionOpt.get();
+        try {
+            if (NotificacionOutbox.TIPO_NUEVA_RESERVA.equals(notificacion.getTipo())) {
+                Optional<Reserva> reserva = reservaRepositorio.findById(notificacion.getReservaId());
+                if (reserva.isEmpty()) {
+                    log.warn("La reserva {} de la notificación {} ya no existe. Se descarta.", notificacion.getReservaId(), id);
+                    outboxRepositorio.registrarFallo(id, NotificacionOutbox.ESTADO_FALLIDA, LocalDateTime.now(), "Reserva inexistente");
+                    return;
+                }
+                emailService.sendNewReservationNotification(reserva.get(), notificacion.getDestinatario());
+            } else {
+                log.error("Tipo de notificación desconocido '{}' (ID {}).", notificacion.getTipo(), id);
+                outboxRepositorio.registrarFallo(id, NotificacionOutbox.ESTADO_FALLIDA, LocalDateTime.now(), "Tipo desconocido");
+                return;
+            }
+            outboxRepositorio.marcarEnviada(id, LocalDateTime.now());
+        } catch (Exception e) {
+            int intentos = notificacion.getIntentos() + 1;
+            String error = e.getMessage() != null && e.getMessage().length() > 1000 ? e.getMessage().substring(0, 1000) : e.getMessage();
+            if (intentos >= maxIntentos) {
+                log.error("Notificación {} para {} descartada tras {} intentos: {}", id, notificacion.getDestinatario(), intentos, error);
+                outboxRepositorio.registrarFallo(id, NotificacionOutbox.ESTADO_FALLIDA, LocalDateTime.now(), error);
+            } else {
+                LocalDateTime proximoIntento = LocalDateTime.now().plusSeconds(calcularBackoffSegundos(intentos));
+                log.warn("Fallo al enviar la notificación {} (intento {}). Se reintenta a las {}: {}", id, intentos, proximoIntento, error);
+                outboxRepositorio.registrarFallo(id, NotificacionOutbox.ESTADO_PENDIENTE, proximoIntento, error);
+            }
+        }
+    }
+
+    private long calcularBackoffSegundos(int intentos) {
+        long backoff = backoffInicialSegundos << Math.min(intentos - 1, 20);
+        return Math.min(backoff, backoffMaximoSegundos);
+    }
+}
@@ -15,6 +15,10 @@ import org.springframework.beans.factory.annotation.Value;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.example.reservafutbol.Modelo.Reserva;
 
@@ -30,6 +34,12 @@ public class EmailService {
     @Autowired
     private JavaMailSender mailSender;
 
+    @Autowired
+    private ColaEnvioCorreos colaCorreos;
+
+    @Value("${mail.cola.espera-maxima-ms:60000}")
+    private long esperaMaximaMs;
+
     @Value("${spring.mail.properties.mail.smtp.from}")
     private String configuredFromEmail;
 
@@ -82,7 +92,7 @@ public class EmailService {
         helper.setText(content, true);
 
         try {
-            mailSender.send(message);
+            enviar(message);
             System.out.println("✔ Email de verificación enviado a: " + to);
         } catch (Exception e) {
             System.err.println("❌ Error al enviar email de verificación a " + to + ": " + e.getMessage());
@@ -112,7 +122,7 @@ public class EmailService {
         helper.setText(content, true);
 
         try {
-            mailSender.send(message);
+            enviar(message);
             System.out.println("✔ Email de recuperación enviado a: " + to);
         } catch (Exception e) {
             System.err.println("❌ Error al enviar email de recuperación a " + to + ": " + e.getMessage());
@@ -148,7 +158,7 @@ public class EmailService {
         helper.setText(content, true);
 
         try {
-            mailSender.send(message);
+            enviar(message);
             System.out.println("✔ Notificación enviada a: " + toEmail);
         } catch (Exception e) {
             System.err.println("❌ Error al enviar notificación a " + toEmail + ": " + e.getMessage());
@@ -170,7 +180,7 @@ public class EmailService {
             InputStreamSource adjunto = new ByteArrayResource(pdfData);
             helper.addAttachment("comprobante_reserva.pdf", adjunto);
 
-            mailSender.send(mensaje);
+            enviar(mensaje);
             System.out.println("✔ Comprobante enviado a: " + to);
         } catch (Exception e) {
             System.err.println("❌ Error al enviar comprobante a " + to + ": " + e.getMessage());
@@ -178,4 +188,32 @@ public class EmailService {
             throw new MessagingException("Fallo al enviar comprobante", e);
         }
     }
-}
\ No newline at end of file
+
+    // Los mensajes se envían a través de ColaEnvioCorreos (conexiones SMTP reutilizadas); acá se espera el resultado
+    // para conservar el contrato de los métodos, que informan el fallo con MessagingException.
+    // Un fallo informado significa que el correo no salió, así quien reintenta (la outbox de notificaciones) no lo duplica:
+    // si vence la espera se retira el mensaje de la cola, y si ya se está enviando se espera el resultado real
+    // (acotado por los timeouts SMTP).
+    private void enviar(MimeMessage message) throws MessagingException {
+        CompletableFuture<Void> envio = colaCorreos.enviar(message);
+        try {
+            try {
+                envio.get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (envio.cancel(false)) {
+                    throw new MessagingException("Tiempo de espera agotado al enviar el correo", e);
+                }
+                envio.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MessagingException me) {
+                throw me;
+            }
+            throw new MessagingException("Fallo al enviar el correo", e.getCause() instanceof Exception causa ? causa : e);
+        } catch (InterruptedException e) {
+            envio.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Envío de correo interrumpido", e);
+        }
+    }
+}
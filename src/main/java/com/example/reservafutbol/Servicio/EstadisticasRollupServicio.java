@@ -0,0 +1,172 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Modelo.Reserva;
+import com.example.reservafutbol.Repositorio.EstadisticaReservaRepositorio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Mantiene la tabla estadisticas_reservas. Cada alta, cambio de estado o baja de una reserva aplica un delta
+// (+1 / -1 y su precio) en la misma transacción, así el rollup nunca queda adelantado ni atrasado respecto de reservas.
+// La reconstrucción completa corrige cualquier desvío (cambios hechos a mano en la base, versiones anteriores, etc.).
+@Service
+public class EstadisticasRollupServicio {
+
+    private static final Logger log = LoggerFactory.getLogger(EstadisticasRollupServicio.class);
+
+    @Autowired
+    private EstadisticaReservaRepositorio estadisticaRepositorio;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Lo que una reserva aporta al rollup. Se toma antes de modificarla para poder restar su contribución anterior.
+    public record Huella(Long complejoId, LocalDate fecha, String tipoCancha, int hora, String estado, BigDecimal precio) {
+
+        public static Huella de(Reserva reserva) {
+            if (reserva == null || reserva.getComplejo() == null || reserva.getFechaHora() == null
+                    || reserva.getTipoCanchaReservada() == null || reserva.getEstado() == null) {
+                return null;
+            }
+            return de(reserva.getComplejo().getId(), reserva.getFechaHora(), reserva.getTipoCanchaReservada(),
+                    reserva.getEstado(), reserva.getPrecio());
+        }
+
+        public static Huella de(Long complejoId, LocalDateTime fechaHora, String tipoCancha, String estado, BigDecimal precio) {
+            if (complejoId == null || fechaHora == null || tipoCancha == null || estado == null) {
+                return null;
+            }
+            return new Huella(
+                    complejoId,
+                    fechaHora.toLocalDate(),
+                    tipoCancha,
+                    fechaHora.getHour(),
+                    estado.toLowerCase(),
+                    precio != null ? precio : BigDecimal.ZERO
+            );
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarAlta(Reserva reserva) {
+        aplicar(Huella.de(reserva), 1);
+    }
+
+    // 'actual' tiene que estar ya persistida con su estado final (saveAndFlush), porque @PreUpdate puede ajustar el estado.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarCambio(Huella anterior, Reserva actual) {
+        registrarCambio(anterior, Huella.de(actual));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarCambio(Huella anterior, Huella nueva) {
+        if (Objects.equals(anterior, nueva)) {
+            return;
+        }
+        aplicar(anterior, -1);
+        aplicar(nueva, 1);
+    }
+
+    // Cambios de varias reservas a la vez (conciliación de pagos): los deltas se agrupan por fila del rollup y se aplica
+    // un solo upsert por fila, en vez de dos por reserva. 'anteriores' y 'nuevas' van alineadas por posición.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarCambios(List<Huella> anteriores, List<Huella> nuevas) {
+        Map<Clave, Delta> deltas = new LinkedHashMap<>();
+        for (int i = 0; i < anteriores.size(); i++) {
+            if (Objects.equals(anteriores.get(i), nuevas.get(i))) {
+                continue;
+            }
+            sumar(deltas, anteriores.get(i), -1);
+            sumar(deltas, nuevas.get(i), 1);
+        }
+        deltas.forEach((clave, delta) -> {
+            if (delta.cantidad != 0 || delta.ingresos.signum() != 0) {
+                estadisticaRepositorio.acumular(clave.complejoId(), clave.fecha(), clave.tipoCancha(), clave.hora(),
+                        clave.estado(), delta.cantidad, delta.ingresos);
+            }
+        });
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarBaja(Huella anterior) {
+        aplicar(anterior, -1);
+    }
+
+    // Usa TransactionTemplate porque también se invoca desde el scheduler y el arranque, dentro de esta misma clase.
+    public int reconstruir() {
+        long inicio = System.currentTimeMillis();
+        Integer filas = transactionTemplate.execute(status -> {
+            estadisticaRepositorio.bloquearParaReconstruir();
+            estadisticaRepositorio.vaciar();
+            return estadisticaRepositorio.recalcularDesdeReservas();
+        });
+        log.info("Rollup de estadísticas reconstruido: {} filas en {} ms.", filas, System.currentTimeMillis() - inicio);
+        return filas != null ? filas : 0;
+    }
+
+    @Scheduled(cron = "${estadisticas.rollup.reconstruccion-cron:0 30 4 * * *}", zone = "America/Argentina/Buenos_Aires")
+    public void reconstruirProgramado() {
+        try {
+            reconstruir();
+        } catch (Exception e) {
+            log.error("Error en la reconstrucción programada del rollup de estadísticas: {}", e.getMessage(), e);
+        }
+    }
+
+    // La primera vez que arranca con la tabla vacía (despliegue inicial) se llena desde las reservas existentes.
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializarSiEstaVacio() {
+        if (estadisticaRepositorio.count() == 0) {
+            log.info("Rollup de estadísticas vacío. Reconstruyendo desde reservas.");
+            reconstruir();
+        }
+    }
+
+    private record Clave(Long complejoId, LocalDate fecha, String tipoCancha, int hora, String estado) {
+    }
+
+    private static class Delta {
+        private long cantidad;
+        private BigDecimal ingresos = BigDecimal.ZERO;
+    }
+
+    private void sumar(Map<Clave, Delta> deltas, Huella huella, int signo) {
+        if (huella == null) {
+            return;
+        }
+        Delta delta = deltas.computeIfAbsent(new Clave(huella.complejoId(), huella.fecha(), huella.tipoCancha(),
+                huella.hora(), huella.estado()), k -> new Delta());
+        delta.cantidad += signo;
+        delta.ingresos = signo > 0 ? delta.ingresos.add(huella.precio()) : delta.ingresos.subtract(huella.precio());
+    }
+
+    private void aplicar(Huella huella, int signo) {
+        if (huella == null) {
+            return;
+        }
+        estadisticaRepositorio.acumular(
+                huella.complejoId(),
+                huella.fecha(),
+                huella.tipoCancha(),
+                huella.hora(),
+                huella.estado(),
+                signo,
+                signo > 0 ? huella.precio() : huella.precio().negate()
+        );
+    }
+}
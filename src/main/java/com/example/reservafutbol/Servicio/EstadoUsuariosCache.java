@@ -0,0 +1,129 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Modelo.ERole;
+import com.example.reservafutbol.Modelo.User;
+import com.example.reservafutbol.Repositorio.ComplejoRepositorio;
+import com.example.reservafutbol.Repositorio.UsuarioRepositorio;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Estado vigente de cada usuario (existe, habilitado, id, roles y complejos propios) para validar tokens JWT y resolver
+// permisos en los servicios sin consultar la base en cada request.
+// Dos niveles: una copia por request (el filtro JWT y los servicios ven el mismo estado durante toda la request) y un
+// cache compartido con TTL corto, que acota cuánto tarda en notarse un cambio hecho en otra instancia. Los cambios hechos
+// en esta instancia (roles, altas/bajas de usuarios y de complejos) invalidan la entrada apenas confirman.
+@Service
+public class EstadoUsuariosCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EstadoUsuariosCache.class);
+
+    private static final String ATRIBUTO_REQUEST = EstadoUsuariosCache.class.getName() + ".";
+
+    public record EstadoUsuario(boolean existe, boolean habilitado, Long id, Set<String> roles, List<Long> complejoIds) {
+        static final EstadoUsuario INEXISTENTE = new EstadoUsuario(false, false, null, Set.of(), List.of());
+
+        public boolean esAdmin() {
+            return roles.contains(ERole.ROLE_ADMIN.name());
+        }
+
+        public boolean esPropietario() {
+            return roles.contains(ERole.ROLE_COMPLEX_OWNER.name());
+        }
+
+        public boolean esDuenioDe(Long complejoId) {
+            return complejoId != null && complejoIds.contains(complejoId);
+        }
+    }
+
+    @Autowired
+    private UsuarioRepositorio usuarioRepositorio;
+
+    @Autowired
+    private ComplejoRepositorio complejoRepositorio;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.estado-usuario.ttl-segundos:60}")
+    private long ttlSegundos;
+
+    @Value("${jwt.estado-usuario.max-entradas:10000}")
+    private long maxEntradas;
+
+    private Cache<String, EstadoUsuario> estados;
+
+    @PostConstruct
+    public void init() {
+        estados = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, estados, "usuarios.estado");
+    }
+
+    public EstadoUsuario obtener(String username) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null) {
+            return estados.get(username, this::cargar);
+        }
+        String atributo = ATRIBUTO_REQUEST + username;
+        EstadoUsuario estado = (EstadoUsuario) request.getAttribute(atributo, RequestAttributes.SCOPE_REQUEST);
+        if (estado == null) {
+            estado = estados.get(username, this::cargar);
+            request.setAttribute(atributo, estado, RequestAttributes.SCOPE_REQUEST);
+        }
+        return estado;
+    }
+
+    // Igual que obtener, pero falla como lo hacía la búsqueda por username de los servicios si el usuario no existe.
+    public EstadoUsuario obtenerExistente(String username) {
+        EstadoUsuario estado = obtener(username);
+        if (!estado.existe()) {
+            throw new UsernameNotFoundException("Usuario no encontrado: " + username);
+        }
+        return estado;
+    }
+
+    public void invalidar(String username) {
+        if (username == null) {
+            return;
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.removeAttribute(ATRIBUTO_REQUEST + username, RequestAttributes.SCOPE_REQUEST);
+        }
+        TransaccionUtil.despuesDelCommit(() -> estados.invalidate(username));
+    }
+
+    private EstadoUsuario cargar(String username) {
+        log.debug("Cargando estado de usuario {} para validación de tokens y permisos.", username);
+        return usuarioRepositorio.findByUsername(username)
+                .map(this::estadoDe)
+                .orElse(EstadoUsuario.INEXISTENTE);
+    }
+
+    private EstadoUsuario estadoDe(User usuario) {
+        Set<String> roles = usuario.getRoles().stream()
+                .map(rol -> rol.getName().name())
+                .collect(Collectors.toUnmodifiableSet());
+        List<Long> complejoIds = List.copyOf(complejoRepositorio.findIdsByPropietario(usuario));
+        return new EstadoUsuario(true, usuario.isEnabled(), usuario.getId(), roles, complejoIds);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.DTO.ReservaDetalleDTO;
+import com.example.reservafutbol.Modelo.Reserva;
+import com.example.reservafutbol.Repositorio.ReservaRepositorio;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Exporta reservas en CSV o NDJSON escribiendo fila por fila desde un Stream de JPA, sin armar la lista en memoria.
+@Service
+public class ExportacionReservasServicio {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportacionReservasServicio.class);
+
+    public static final String FORMATO_CSV = "csv";
+    public static final String FORMATO_NDJSON = "ndjson";
+
+    private static final LocalDateTime FECHA_MINIMA_CONSULTA = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime FECHA_MAXIMA_CONSULTA = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final int FILAS_POR_FLUSH = 500;
+
+    private static final String ENCABEZADO_CSV = "id,userEmail,complejoId,complejoNombre,complejoUbicacion,tipoCanchaReservada,"
+            + "nombreCanchaAsignada,cliente,dni,telefono,fechaHora,precioTotal,pagada,estado,metodoPago,mercadoPagoPaymentId";
+
+    @Autowired
+    private ReservaRepositorio reservaRepositorio;
+
+    @Autowired
+    private EstadoUsuariosCache estadoUsuarios;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private TransactionTemplate transaccionLectura;
+
+    @PostConstruct
+    public void init() {
+        transaccionLectura = new TransactionTemplate(transactionManager);
+        transaccionLectura.setReadOnly(true);
+    }
+
+    // Valida permisos y parámetros antes de empezar a responder; el cuerpo se escribe después, en el hilo de la respuesta.
+    public StreamingResponseBody prepararExportacion(String username, String formato, LocalDate desde, LocalDate hasta) {
+        String formatoNormalizado = formato == null ? FORMATO_CSV : formato.trim().toLowerCase();
+        if (!FORMATO_CSV.equals(formatoNormalizado) && !FORMATO_NDJSON.equals(formatoNormalizado)) {
+            throw new IllegalArgumentException("Formato no soportado: " + formato + ". Usá 'csv' o 'ndjson'.");
+        }
+        if (desde != null && hasta != null && hasta.isBefore(desde)) {
+            throw new IllegalArgumentException("La fecha 'hasta' no puede ser anterior a 'desde'.");
+        }
+
+        EstadoUsuariosCache.EstadoUsuario usuario = estadoUsuarios.obtenerExistente(username);
+        List<Long> complejoIds;
+        if (usuario.esAdmin()) {
+            complejoIds = null;
+        } else if (usuario.esPropietario()) {
+            complejoIds = usuario.complejoIds();
+        } else {
+            throw new SecurityException("Acceso denegado: solo administradores y dueños de complejos pueden exportar reservas.");
+        }
+
+        LocalDateTime inicio = desde != null ? desde.atStartOfDay() : FECHA_MINIMA_CONSULTA;
+        LocalDateTime fin = hasta != null ? hasta.plusDays(1).atStartOfDay() : FECHA_MAXIMA_CONSULTA;
+
+        return salida -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+            if (complejoIds != null && complejoIds.isEmpty()) {
+                escribirEncabezado(writer, formatoNormalizado);
+                writer.flush();
+                return;
+            }
+            long inicioMs = System.currentTimeMillis();
+            Long filas = transaccionLectura.execute(status -> {
+                try (Stream<Reserva> reservas = complejoIds == null
+                        ? reservaRepositorio.streamParaExportar(inicio, fin)
+                        : reservaRepositorio.streamParaExportarPorComplejos(complejoIds, inicio, fin)) {
+                    return escribir(reservas, writer, formatoNormalizado);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            log.info("Exportación {} de {} completada: {} reservas en {} ms.", formatoNormalizado, username, filas,
+                    System.currentTimeMillis() - inicioMs);
+        };
+    }
+
+    private long escribir(Stream<Reserva> reservas, Writer writer, String formato) throws IOException {
+        escribirEncabezado(writer, formato);
+        long filas = 0;
+        Iterator<Reserva> iterador = reservas.iterator();
+        while (iterador.hasNext()) {
+            Reserva reserva = iterador.next();
+            ReservaDetalleDTO fila = new ReservaDetalleDTO(reserva);
+            // Se suelta la entidad del contexto de persistencia para que el heap no crezca con cada fila leída.
+            entityManager.detach(reserva);
+            if (FORMATO_NDJSON.equals(formato)) {
+                writer.write(objectMapper.writeValueAsString(fila));
+            } else {
+                writer.write(filaCsv(fila));
+            }
+            writer.write('\n');
+            if (++filas % FILAS_POR_FLUSH == 0) {
+                writer.flush();
+            }
+        }
+        return filas;
+    }
+
+    private static void escribirEncabezado(Writer writer, String formato) throws IOException {
+        if (FORMATO_CSV.equals(formato)) {
+            writer.write(ENCABEZADO_CSV);
+            writer.write('\n');
+        }
+    }
+
+    private static String filaCsv(ReservaDetalleDTO r) {
+        return String.join(",",
+                csv(r.getId()), csv(r.getUserEmail()), csv(r.getComplejoId()), csv(r.getComplejoNombre()),
+                csv(r.getComplejoUbicacion()), csv(r.getTipoCanchaReservada()), csv(r.getNombreCanchaAsignada()),
+                csv(r.getCliente()), csv(r.getDni()), csv(r.getTelefono()), csv(r.getFechaHora()), csv(r.getPrecioTotal()),
+                csv(r.getPagada()), csv(r.getEstado()), csv(r.getMetodoPago()), csv(r.getMercadoPagoPaymentId()));
+    }
+
+    private static String csv(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor.toString();
+        if (texto.contains(",") || texto.contains("\"") || texto.contains("\n") || texto.contains("\r")) {
+            return "\"" + texto.replace("\"", "\"\"") + "\"";
+        }
+        return texto;
+    }
+}
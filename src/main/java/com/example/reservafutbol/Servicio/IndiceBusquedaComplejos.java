@@ -0,0 +1,371 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.DTO.FiltroBusquedaComplejos;
+import com.example.reservafutbol.Modelo.Complejo;
+import com.example.reservafutbol.Repositorio.ComplejoRepositorio;
+import com.example.reservafutbol.payload.response.BusquedaComplejosResponse;
+import com.example.reservafutbol.payload.response.ComplejoResumenDTO;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+// Índice invertido en memoria para buscar complejos por texto y filtrar por atributos de sus canchas sin ir a la base.
+// Se arma completo al arrancar y después se actualiza complejo por complejo cuando ComplejoServicio lo modifica.
+@Service
+public class IndiceBusquedaComplejos {
+
+    private static final Logger log = LoggerFactory.getLogger(IndiceBusquedaComplejos.class);
+
+    public static final int MAX_RESULTADOS = 200;
+
+    public static final String FACETA_TIPO = "tipoCancha";
+    public static final String FACETA_SUPERFICIE = "superficie";
+    public static final String FACETA_ILUMINACION = "iluminacion";
+    public static final String FACETA_TECHO = "techo";
+    public static final String FACETA_PRECIO = "precio";
+
+    @Autowired
+    private ComplejoRepositorio complejoRepositorio;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Límites de los rangos de precio por hora que se informan como faceta, en orden creciente.
+    @Value("${complejos.busqueda.rangos-precio:10000,20000,30000}")
+    private double[] limitesPrecio;
+
+    // Un tipo de cancha de un complejo, con lo necesario para filtrar y ordenar.
+    record TipoIndexado(String tipo, int cantidad, Double precio, String superficie, boolean iluminacion, boolean techo) {
+    }
+
+    record Documento(Long id, String nombre, String ubicacion, String portadaUrl, LocalTime horarioApertura,
+                     LocalTime horarioCierre, Set<String> tokensNombre, Set<String> tokens, List<TipoIndexado> tipos) {
+    }
+
+    record TipoDeComplejo(Documento documento, TipoIndexado tipo) {
+    }
+
+    private final Map<Long, Documento> documentos = new HashMap<>();
+    // Término -> complejos que lo contienen. Ordenado para resolver búsquedas por prefijo ("pale" -> "palermo").
+    private final NavigableMap<String, Set<Long>> terminos = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean listo = false;
+
+    // Orden de las lecturas de la base: cada reconstrucción y cada reindexado toma un número antes de leer, y al aplicar
+    // bajo el lock se descarta lo que ya fue reemplazado por una lectura posterior. Así una reconstrucción no pisa un
+    // reindexado que se aplicó mientras leía, y dos reindexados del mismo complejo no se aplican desordenados.
+    private final AtomicLong secuencia = new AtomicLong();
+    // Último orden aplicado por complejo desde la última reconstrucción (protegido por el lock de escritura).
+    private final Map<Long, Long> ordenPorComplejo = new HashMap<>();
+    private long ordenReconstruccion = 0;
+
+    private TransactionTemplate transaccionLectura;
+
+    @PostConstruct
+    public void init() {
+        transaccionLectura = new TransactionTemplate(transactionManager);
+        transaccionLectura.setReadOnly(true);
+        // Se llama después del commit del cambio, cuando la transacción original ya no admite consultas nuevas.
+        transaccionLectura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Arrays.sort(limitesPrecio);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        long orden = secuencia.incrementAndGet();
+        List<Documento> nuevos = transaccionLectura.execute(status -> complejoRepositorio.findAll().stream()
+                .map(IndiceBusquedaComplejos::documentoDe)
+                .collect(Collectors.toList()));
+        lock.writeLock().lock();
+        try {
+            if (orden < ordenReconstruccion) {
+                // Ya se aplicó una reconstrucción que leyó después que esta.
+                return;
+            }
+            // Los complejos reindexados después de empezar esta lectura conservan su versión (o su ausencia).
+            Map<Long, Documento> posteriores = new HashMap<>();
+            ordenPorComplejo.forEach((id, ordenComplejo) -> {
+                if (ordenComplejo > orden) {
+                    posteriores.put(id, documentos.get(id));
+                }
+            });
+            documentos.clear();
+            terminos.clear();
+            if (nuevos != null) {
+                nuevos.stream().filter(documento -> !posteriores.containsKey(documento.id())).forEach(this::agregar);
+            }
+            posteriores.values().stream().filter(documento -> documento != null).forEach(this::agregar);
+            ordenPorComplejo.values().removeIf(ordenComplejo -> ordenComplejo <= orden);
+            ordenReconstruccion = orden;
+            listo = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Índice de búsqueda de complejos armado: {} complejos, {} términos, en {} ms.",
+                documentos.size(), terminos.size(), System.currentTimeMillis() - inicio);
+    }
+
+    // Reindexa un complejo cuando confirma la transacción que lo creó, modificó o eliminó.
+    public void reindexar(Long complejoId) {
+        TransaccionUtil.despuesDelCommit(() -> {
+            try {
+                long orden = secuencia.incrementAndGet();
+                Documento documento = transaccionLectura.execute(status ->
+                        complejoRepositorio.findById(complejoId).map(IndiceBusquedaComplejos::documentoDe).orElse(null));
+                lock.writeLock().lock();
+                try {
+                    if (orden < Math.max(ordenReconstruccion, ordenPorComplejo.getOrDefault(complejoId, 0L))) {
+                        // Una lectura posterior de este complejo (o del índice completo) ya se aplicó.
+                        return;
+                    }
+                    ordenPorComplejo.put(complejoId, orden);
+                    quitar(complejoId);
+                    if (documento != null) {
+                        agregar(documento);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } catch (Exception e) {
+                // Se fuerza una reconstrucción completa en la próxima búsqueda en vez de dejar el índice desalineado.
+                listo = false;
+                log.error("Error reindexando el complejo {} para búsqueda: {}", complejoId, e.getMessage(), e);
+            }
+        });
+    }
+
+    public BusquedaComplejosResponse buscar(FiltroBusquedaComplejos filtro) {
+        if (filtro.getPrecioMin() != null && filtro.getPrecioMax() != null && filtro.getPrecioMin() > filtro.getPrecioMax()) {
+            throw new IllegalArgumentException("precioMin no puede ser mayor que precioMax.");
+        }
+        int limite = filtro.getLimite() <= 0 ? 50 : Math.min(filtro.getLimite(), MAX_RESULTADOS);
+        List<String> tokensConsulta = tokenizar(filtro.getQ());
+
+        record Coincidencia(Documento documento, Double precioMinimo, int puntaje) {
+        }
+
+        asegurarListo();
+        List<Coincidencia> coincidencias = new ArrayList<>();
+        Map<String, Map<String, Integer>> facetas = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Documento documento : candidatos(tokensConsulta)) {
+                List<TipoIndexado> tipos = tiposQueCumplen(documento, filtro);
+                if (tipos.isEmpty()) {
+                    continue;
+                }
+                Double precioMinimo = tipos.stream().map(TipoIndexado::precio).filter(p -> p != null)
+                        .min(Double::compare).orElse(null);
+                coincidencias.add(new Coincidencia(documento, precioMinimo, puntaje(documento, tokensConsulta)));
+                contarFacetas(facetas, tipos);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<ComplejoResumenDTO> resultados = coincidencias.stream()
+                .sorted(Comparator.comparingInt(Coincidencia::puntaje).reversed()
+                        .thenComparing(c -> c.documento().nombre(), String.CASE_INSENSITIVE_ORDER)
+                        .thenComparing(c -> c.documento().id()))
+                .limit(limite)
+                .map(c -> new ComplejoResumenDTO(c.documento().id(), c.documento().nombre(), c.documento().ubicacion(),
+                        c.documento().portadaUrl(), c.precioMinimo()))
+                .collect(Collectors.toList());
+        return new BusquedaComplejosResponse(resultados, coincidencias.size(), facetas);
+    }
+
+    // Cada tipo de cancha (de cada complejo) que cumple los filtros, para la búsqueda de disponibilidad.
+    List<TipoDeComplejo> filtrar(FiltroBusquedaComplejos filtro) {
+        asegurarListo();
+        List<TipoDeComplejo> resultado = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Documento documento : candidatos(tokenizar(filtro.getQ()))) {
+                for (TipoIndexado tipo : tiposQueCumplen(documento, filtro)) {
+                    resultado.add(new TipoDeComplejo(documento, tipo));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return resultado;
+    }
+
+    private void asegurarListo() {
+        if (!listo) {
+            synchronized (this) {
+                if (!listo) {
+                    reconstruir();
+                }
+            }
+        }
+    }
+
+    // Intersección de los postings de cada término de la consulta; sin texto, todos los complejos.
+    private List<Documento> candidatos(List<String> tokensConsulta) {
+        if (tokensConsulta.isEmpty()) {
+            return new ArrayList<>(documentos.values());
+        }
+        Set<Long> ids = null;
+        for (String token : tokensConsulta) {
+            Set<Long> conPrefijo = new HashSet<>();
+            terminos.subMap(token, true, token + Character.MAX_VALUE, false).values().forEach(conPrefijo::addAll);
+            if (ids == null) {
+                ids = conPrefijo;
+            } else {
+                ids.retainAll(conPrefijo);
+            }
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+        }
+        return ids.stream().map(documentos::get).collect(Collectors.toList());
+    }
+
+    private static List<TipoIndexado> tiposQueCumplen(Documento documento, FiltroBusquedaComplejos filtro) {
+        List<TipoIndexado> tipos = new ArrayList<>();
+        for (TipoIndexado tipo : documento.tipos()) {
+            if (filtro.getTipoCancha() != null && !filtro.getTipoCancha().equalsIgnoreCase(tipo.tipo())) continue;
+            if (filtro.getSuperficie() != null && !filtro.getSuperficie().equalsIgnoreCase(tipo.superficie())) continue;
+            if (filtro.getIluminacion() != null && filtro.getIluminacion() != tipo.iluminacion()) continue;
+            if (filtro.getTecho() != null && filtro.getTecho() != tipo.techo()) continue;
+            if (filtro.getPrecioMin() != null && (tipo.precio() == null || tipo.precio() < filtro.getPrecioMin())) continue;
+            if (filtro.getPrecioMax() != null && (tipo.precio() == null || tipo.precio() > filtro.getPrecioMax())) continue;
+            tipos.add(tipo);
+        }
+        return tipos;
+    }
+
+    // Cada complejo suma una vez por valor de faceta, aunque tenga varios tipos de cancha con ese valor.
+    private void contarFacetas(Map<String, Map<String, Integer>> facetas, List<TipoIndexado> tipos) {
+        Map<String, Set<String>> valores = new HashMap<>();
+        for (TipoIndexado tipo : tipos) {
+            valores.computeIfAbsent(FACETA_TIPO, k -> new HashSet<>()).add(tipo.tipo());
+            if (tipo.superficie() != null) {
+                valores.computeIfAbsent(FACETA_SUPERFICIE, k -> new HashSet<>()).add(tipo.superficie());
+            }
+            valores.computeIfAbsent(FACETA_ILUMINACION, k -> new HashSet<>()).add(String.valueOf(tipo.iluminacion()));
+            valores.computeIfAbsent(FACETA_TECHO, k -> new HashSet<>()).add(String.valueOf(tipo.techo()));
+            if (tipo.precio() != null) {
+                valores.computeIfAbsent(FACETA_PRECIO, k -> new HashSet<>()).add(rangoPrecio(tipo.precio()));
+            }
+        }
+        valores.forEach((faceta, claves) -> {
+            Map<String, Integer> conteos = facetas.computeIfAbsent(faceta, k -> new TreeMap<>());
+            claves.forEach(clave -> conteos.merge(clave, 1, Integer::sum));
+        });
+    }
+
+    private String rangoPrecio(double precio) {
+        double desde = 0;
+        for (double limite : limitesPrecio) {
+            if (precio < limite) {
+                return formatear(desde) + "-" + formatear(limite);
+            }
+            desde = limite;
+        }
+        return formatear(desde) + "+";
+    }
+
+    private static String formatear(double valor) {
+        return valor == Math.rint(valor) ? String.valueOf((long) valor) : String.valueOf(valor);
+    }
+
+    // Coincidencias en el nombre pesan más que en la ubicación o la descripción.
+    private static int puntaje(Documento documento, List<String> tokensConsulta) {
+        int puntaje = 0;
+        for (String token : tokensConsulta) {
+            boolean enNombre = documento.tokensNombre().stream().anyMatch(t -> t.startsWith(token));
+            puntaje += enNombre ? 2 : 1;
+        }
+        return puntaje;
+    }
+
+    private void agregar(Documento documento) {
+        documentos.put(documento.id(), documento);
+        for (String token : documento.tokens()) {
+            terminos.computeIfAbsent(token, k -> new HashSet<>()).add(documento.id());
+        }
+    }
+
+    private void quitar(Long complejoId) {
+        Documento anterior = documentos.remove(complejoId);
+        if (anterior == null) {
+            return;
+        }
+        for (String token : anterior.tokens()) {
+            Set<Long> ids = terminos.get(token);
+            if (ids != null) {
+                ids.remove(complejoId);
+                if (ids.isEmpty()) {
+                    terminos.remove(token);
+                }
+            }
+        }
+    }
+
+    private static Documento documentoDe(Complejo complejo) {
+        Set<String> tokensNombre = new HashSet<>(tokenizar(complejo.getNombre()));
+        Set<String> tokens = new HashSet<>(tokensNombre);
+        tokens.addAll(tokenizar(complejo.getUbicacion()));
+        tokens.addAll(tokenizar(complejo.getDescripcion()));
+
+        Map<String, Integer> counts = complejo.getCanchaCounts();
+        Map<String, Double> precios = complejo.getCanchaPrices();
+        Map<String, String> superficies = complejo.getCanchaSurfaces();
+        Map<String, Boolean> iluminacion = complejo.getCanchaIluminacion();
+        Map<String, Boolean> techo = complejo.getCanchaTecho();
+        List<TipoIndexado> tipos = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                continue;
+            }
+            String tipo = entry.getKey();
+            tipos.add(new TipoIndexado(tipo, entry.getValue(), precios.get(tipo), superficies.get(tipo),
+                    Boolean.TRUE.equals(iluminacion.get(tipo)), Boolean.TRUE.equals(techo.get(tipo))));
+        }
+        String portada = complejo.getFotoUrlsPorResolucion() != null ? complejo.getFotoUrlsPorResolucion().get("thumbnail") : null;
+        return new Documento(complejo.getId(), complejo.getNombre(), complejo.getUbicacion(), portada,
+                complejo.getHorarioApertura(), complejo.getHorarioCierre(), Set.copyOf(tokensNombre), Set.copyOf(tokens), List.copyOf(tipos));
+    }
+
+    // Minúsculas, sin tildes y partido en palabras: "Fútbol Palermo" -> [futbol, palermo].
+    static List<String> tokenizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return List.of();
+        }
+        String normalizado = Normalizer.normalize(texto, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase();
+        return Arrays.stream(normalizado.split("[^\\p{Alnum}]+"))
+                .filter(t -> !t.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+}
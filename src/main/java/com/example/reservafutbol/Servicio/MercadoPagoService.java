@@ -16,6 +16,7 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode; // Importar RoundingMode
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -46,6 +47,10 @@ public class MercadoPagoService {
     @Value("${MERCADO_PAGO_ACCESS_TOKEN}")
     private String accessToken;
 
+    // La preferencia vence junto con la retención de la reserva, así MP no acepta pagos de una reserva ya cancelada.
+    @Value("${reservas.vencimiento.retencion-minutos:30}")
+    private long retencionMinutos;
+
     @PostConstruct
     public void init() {
         log.info("Configurando Mercado Pago SDK...");
@@ -56,7 +61,8 @@ public class MercadoPagoService {
         MercadoPagoConfig.setAccessToken(accessToken);
     }
 
-    public String crearPreferencia(Long reservaId, String pagador, BigDecimal monto) throws MPException, MPApiException {
+    // Devuelve la preferencia creada: el controlador usa su initPoint y guarda su ID en la reserva.
+    public Preference crearPreferencia(Long reservaId, String pagador, BigDecimal monto) throws MPException, MPApiException {
         PreferenceClient client = new PreferenceClient();
 
         // 1. Validar y redondear el monto antes de usarlo
@@ -101,11 +107,12 @@ public class MercadoPagoService {
                 .autoReturn("approved")
                 .notificationUrl(notificationUrl)
                 .externalReference(String.valueOf(reservaId != null ? reservaId : "unknown_reserva")) // Asegurar externalReference no nulo
+                .expires(true)
+                .expirationDateTo(OffsetDateTime.now().plusMinutes(retencionMinutos))
                 .build();
 
         try {
-            Preference preference = client.create(preferenceRequest);
-            return preference.getInitPoint();
+            return client.create(preferenceRequest);
         } catch (MPApiException e) {
             String errorContent = "No content available";
             if (e.getApiResponse() != null && e.getApiResponse().getContent() != null) {
@@ -0,0 +1,31 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Modelo.NotificacionOutbox;
+import com.example.reservafutbol.Modelo.Reserva;
+import com.example.reservafutbol.Repositorio.NotificacionOutboxRepositorio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class NotificacionOutboxServicio {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificacionOutboxServicio.class);
+
+    @Autowired
+    private NotificacionOutboxRepositorio outboxRepositorio;
+
+    // Debe llamarse dentro de la transacción de la reserva: si esa transacción hace rollback, la notificación no existe.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void encolarNuevaReserva(Reserva reserva, String destinatario) {
+        if (destinatario == null || destinatario.isBlank()) {
+            log.warn("Se omitió la notificación de la reserva {}: destinatario vacío.", reserva.getId());
+            return;
+        }
+        outboxRepositorio.save(new NotificacionOutbox(NotificacionOutbox.TIPO_NUEVA_RESERVA, reserva.getId(), destinatario));
+        log.info("Notificación de nueva reserva {} encolada para {}.", reserva.getId(), destinatario);
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Modelo.Complejo;
+import com.example.reservafutbol.Modelo.EstadoReserva;
+import com.example.reservafutbol.Modelo.Reserva;
+import com.example.reservafutbol.Repositorio.ComplejoRepositorio;
+import com.example.reservafutbol.Repositorio.ReservaRepositorio;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Índice en memoria de ocupación por (complejo, tipo de cancha, día).
+// Cada día se carga desde la base la primera vez que se consulta (en una caché acotada) y luego se mantiene
+// con las altas, cancelaciones y cambios de estado de las reservas, de modo que las
+// consultas de disponibilidad no necesitan ir a la base.
+@Service
+public class OcupacionCanchasIndice {
+
+    private static final Logger log = LoggerFactory.getLogger(OcupacionCanchasIndice.class);
+
+    private static final int SLOT_DURATION_MINUTES = 60;
+
+    @Autowired
+    private ReservaRepositorio reservaRepositorio;
+
+    @Autowired
+    private ComplejoRepositorio complejoRepositorio;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Tiempo máximo que un día cargado se considera vigente (cubre cambios hechos por otras instancias o a mano en la base)
+    @Value("${reservas.ocupacion.ttl-segundos:300}")
+    private long ttlSegundos;
+
+    @Value("${reservas.ocupacion.max-dias:5000}")
+    private int maxDias;
+
+    private Cache<ClaveDia, OcupacionDia> dias;
+    private final ConcurrentHashMap<Long, Map<String, Integer>> capacidades = new ConcurrentHashMap<>();
+    // Se incrementa en cada invalidación: una capacidad leída antes no se publica después de invalidada.
+    private final AtomicLong generacionCapacidades = new AtomicLong();
+
+    // Las cargas leen en su propia transacción: así no ven filas sin confirmar de la transacción del llamador.
+    private TransactionTemplate transaccionLectura;
+
+    private record ClaveDia(Long complejoId, String tipoCancha, LocalDate fecha) {
+    }
+
+    private record Ocupacion(LocalDateTime inicio, String nombreCancha) {
+    }
+
+    // La carga y las actualizaciones de un día se serializan con el monitor del propio día, no con el de la caché:
+    // la consulta a la base no bloquea a otros días.
+    private static final class OcupacionDia {
+        private final Map<Long, Ocupacion> reservas = new ConcurrentHashMap<>();
+        private boolean cargado;
+    }
+
+    @PostConstruct
+    public void init() {
+        transaccionLectura = new TransactionTemplate(transactionManager);
+        transaccionLectura.setReadOnly(true);
+        transaccionLectura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // El vencimiento cubre cambios hechos por otras instancias o a mano en la base.
+        dias = Caffeine.newBuilder()
+                .maximumSize(maxDias)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, dias, "reservas.ocupacion");
+    }
+
+    public int capacidad(Long complejoId, String tipoCancha) {
+        Map<String, Integer> counts = capacidades.get(complejoId);
+        if (counts == null) {
+            long generacion = generacionCapacidades.get();
+            Map<String, Integer> leidas = transaccionLectura.execute(status -> {
+                Complejo complejo = complejoRepositorio.findById(complejoId)
+                        .orElseThrow(() -> new IllegalArgumentException("Complejo no encontrado con ID: " + complejoId));
+                return complejo.getCanchaCounts() != null
+                        ? Collections.unmodifiableMap(new HashMap<>(complejo.getCanchaCounts()))
+                        : Collections.<String, Integer>emptyMap();
+            });
+            counts = leidas;
+            capacidades.compute(complejoId, (id, actual) ->
+                    actual != null ? actual : generacionCapacidades.get() == generacion ? leidas : null);
+        }
+        Integer total = counts.get(tipoCancha);
+        return total != null ? total : 0;
+    }
+
+    public int contarOcupadas(Long complejoId, String tipoCancha, LocalDateTime inicio, LocalDateTime fin) {
+        return ocupacionesQueSolapan(complejoId, tipoCancha, inicio, fin).size();
+    }
+
+    public Set<String> nombresOcupados(Long complejoId, String tipoCancha, LocalDateTime inicio, LocalDateTime fin) {
+        Set<String> nombres = new HashSet<>();
+        for (Ocupacion ocupacion : ocupacionesQueSolapan(complejoId, tipoCancha, inicio, fin)) {
+            nombres.add(ocupacion.nombreCancha());
+        }
+        return nombres;
+    }
+
+    // Refleja el estado actual de la reserva en el índice una vez confirmada la transacción.
+    public void registrar(Reserva reserva) {
+        if (reserva == null || reserva.getId() == null || reserva.getComplejo() == null || reserva.getFechaHora() == null) {
+            return;
+        }
+        registrar(reserva.getId(), reserva.getComplejo().getId(), reserva.getTipoCanchaReservada(), reserva.getFechaHora(),
+                reserva.getNombreCanchaAsignada(), reserva.getEstado());
+    }
+
+    public void registrar(Long reservaId, Long complejoId, String tipoCancha, LocalDateTime inicio, String nombreCancha, String estado) {
+        if (reservaId == null || complejoId == null || inicio == null) {
+            return;
+        }
+        boolean ocupa = EstadoReserva.ocupaCancha(estado);
+
+        TransaccionUtil.despuesDelCommit(() -> {
+            OcupacionDia dia = dias.getIfPresent(new ClaveDia(complejoId, tipoCancha, inicio.toLocalDate()));
+            if (dia == null) {
+                return;
+            }
+            synchronized (dia) {
+                // Un día que todavía no se cargó va a leer este cambio de la base.
+                if (!dia.cargado) {
+                    return;
+                }
+                if (ocupa) {
+                    dia.reservas.put(reservaId, new Ocupacion(inicio, nombreCancha));
+                } else {
+                    dia.reservas.remove(reservaId);
+                }
+            }
+        });
+    }
+
+    public void quitar(Long complejoId, String tipoCancha, LocalDateTime inicio, Long reservaId) {
+        TransaccionUtil.despuesDelCommit(() -> {
+            OcupacionDia dia = dias.getIfPresent(new ClaveDia(complejoId, tipoCancha, inicio.toLocalDate()));
+            if (dia != null) {
+                synchronized (dia) {
+                    dia.reservas.remove(reservaId);
+                }
+            }
+        });
+    }
+
+    // Se invoca cuando cambia la configuración de un complejo (cantidad de canchas) o se elimina.
+    public void invalidarComplejo(Long complejoId) {
+        TransaccionUtil.despuesDelCommit(() -> {
+            generacionCapacidades.incrementAndGet();
+            capacidades.remove(complejoId);
+            dias.asMap().keySet().removeIf(clave -> clave.complejoId().equals(complejoId));
+        });
+    }
+
+    private List<Ocupacion> ocupacionesQueSolapan(Long complejoId, String tipoCancha, LocalDateTime inicio, LocalDateTime fin) {
+        // Una reserva ocupa [fechaHora, fechaHora + 60min), así que puede venir del día anterior al slot consultado.
+        LocalDate primerDia = inicio.minusMinutes(SLOT_DURATION_MINUTES).toLocalDate();
+        LocalDate ultimoDia = fin.minusNanos(1).toLocalDate();
+
+        List<Ocupacion> resultado = new ArrayList<>();
+        for (LocalDate fecha = primerDia; !fecha.isAfter(ultimoDia); fecha = fecha.plusDays(1)) {
+            OcupacionDia dia = obtenerDia(new ClaveDia(complejoId, tipoCancha, fecha));
+            for (Ocupacion ocupacion : dia.reservas.values()) {
+                LocalDateTime finOcupacion = ocupacion.inicio().plusMinutes(SLOT_DURATION_MINUTES);
+                if (ocupacion.inicio().isBefore(fin) && finOcupacion.isAfter(inicio)) {
+                    resultado.add(ocupacion);
+                }
+            }
+        }
+        return resultado;
+    }
+
+    // El día se publica vacío en la caché (sin I/O) y se carga afuera; las consultas simultáneas del mismo día esperan
+    // esa única carga, y las actualizaciones que llegan durante la carga se aplican después (mismo monitor).
+    private OcupacionDia obtenerDia(ClaveDia clave) {
+        OcupacionDia dia = dias.get(clave, k -> new OcupacionDia());
+        synchronized (dia) {
+            if (!dia.cargado) {
+                cargarDia(clave, dia);
+                dia.cargado = true;
+            }
+        }
+        return dia;
+    }
+
+    private void cargarDia(ClaveDia clave, OcupacionDia dia) {
+        Map<Long, Ocupacion> leidas = transaccionLectura.execute(status -> {
+            Map<Long, Ocupacion> ocupaciones = new HashMap<>();
+            for (Reserva reserva : reservaRepositorio.findActivasPorComplejoYTipoEntre(
+                    clave.complejoId(),
+                    clave.tipoCancha(),
+                    clave.fecha().atStartOfDay(),
+                    clave.fecha().plusDays(1).atStartOfDay())) {
+                ocupaciones.put(reserva.getId(), new Ocupacion(reserva.getFechaHora(), reserva.getNombreCanchaAsignada()));
+            }
+            return ocupaciones;
+        });
+        dia.reservas.putAll(leidas);
+        log.debug("Ocupación cargada para complejo {} tipo '{}' día {}: {} reservas activas.",
+                clave.complejoId(), clave.tipoCancha(), clave.fecha(), leidas.size());
+    }
+}
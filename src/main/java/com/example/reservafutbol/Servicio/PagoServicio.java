@@ -2,16 +2,31 @@ package com.example.reservafutbol.Servicio;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value; // Importar Value
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+// Consulta pagos a la API de Mercado Pago con un único cliente HTTP: el pool de conexiones mantiene vivas las conexiones
+// TLS entre notificaciones, y el semáforo acota cuántas consultas pueden estar en vuelo cuando MP manda ráfagas de webhooks.
 @Service
 public class PagoServicio {
 
@@ -20,37 +35,148 @@ public class PagoServicio {
     @Value("${MERCADO_PAGO_ACCESS_TOKEN}") // Inyectar el token desde properties
     private String accessToken;
 
-    private static final String BASE_URL = "https://api.mercadopago.com/v1/";
+    @Value("${mercadopago.api.base-url:https://api.mercadopago.com/v1/}")
+    private String baseUrl;
+
+    @Value("${mercadopago.http.connect-timeout-ms:3000}")
+    private long connectTimeoutMs;
+
+    @Value("${mercadopago.http.read-timeout-ms:10000}")
+    private long readTimeoutMs;
+
+    @Value("${mercadopago.http.call-timeout-ms:15000}")
+    private long callTimeoutMs;
+
+    @Value("${mercadopago.http.conexiones-ociosas:5}")
+    private int conexionesOciosas;
+
+    @Value("${mercadopago.http.keep-alive-segundos:300}")
+    private long keepAliveSegundos;
+
+    @Value("${mercadopago.http.max-en-curso:16}")
+    private int maxEnCurso;
+
+    // Cuánto espera una consulta por un lugar libre antes de rechazarse; MP reintenta la notificación si respondemos error.
+    @Value("${mercadopago.http.espera-lugar-ms:2000}")
+    private long esperaLugarMs;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private OkHttpClient client;
+    private HttpUrl urlPagos;
+    private Semaphore enCurso;
+
+    private Timer consultasOk;
+    private Timer consultasErrorHttp;
+    private Timer consultasErrorIo;
+    private Counter rechazadas;
+
+    @PostConstruct
+    public void init() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxEnCurso);
+        dispatcher.setMaxRequestsPerHost(maxEnCurso);
+        client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(conexionesOciosas, keepAliveSegundos, TimeUnit.SECONDS))
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .readTimeout(Duration.ofMillis(readTimeoutMs))
+                .callTimeout(Duration.ofMillis(callTimeoutMs))
+                .build();
+        urlPagos = HttpUrl.get(baseUrl).newBuilder().addPathSegment("payments").build();
+        enCurso = new Semaphore(maxEnCurso);
+
+        consultasOk = timer("ok");
+        consultasErrorHttp = timer("error_http");
+        consultasErrorIo = timer("error_io");
+        rechazadas = Counter.builder("mercadopago.pagos.consultas.rechazadas")
+                .description("Consultas de pago rechazadas por exceso de consultas en curso").register(meterRegistry);
+        Gauge.builder("mercadopago.pagos.consultas.en_curso", enCurso, s -> maxEnCurso - s.availablePermits())
+                .description("Consultas de pago a Mercado Pago en curso").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
 
     public JsonNode obtenerPagoPorId(String paymentId) throws Exception {
-        OkHttpClient client = new OkHttpClient();
-        String url = BASE_URL + "payments/" + paymentId + "?access_token=" + accessToken; // Usar el token inyectado
+        // El token viaja solo en el header; en la URL quedaba registrado en logs y proxies.
+        return consultar(urlPagos.newBuilder().addPathSegment(paymentId).build(), "pago " + paymentId);
+    }
+
+    // Pagos de una preferencia (external_reference = ID de reserva), del más reciente al más antiguo. Lo usa la
+    // conciliación para las reservas cuyo webhook nunca llegó; devuelve el arreglo 'results' de la búsqueda.
+    public JsonNode buscarPagosPorReferencia(String externalReference) throws Exception {
+        HttpUrl url = urlPagos.newBuilder()
+                .addPathSegment("search")
+                .addQueryParameter("external_reference", externalReference)
+                .addQueryParameter("sort", "date_created")
+                .addQueryParameter("criteria", "desc")
+                .build();
+        JsonNode busqueda = consultar(url, "pagos de la referencia " + externalReference);
+        return busqueda.has("results") ? busqueda.get("results") : objectMapper.createArrayNode();
+    }
 
+    private JsonNode consultar(HttpUrl url, String descripcion) {
         Request request = new Request.Builder()
                 .url(url)
                 .get()
-                .addHeader("Authorization", "Bearer " + accessToken) // Mejor práctica: enviar token en el header Authorization
+                .addHeader("Authorization", "Bearer " + accessToken)
                 .build();
 
+        boolean conLugar;
+        try {
+            conLugar = enCurso.tryAcquire(esperaLugarMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta a Mercado Pago interrumpida.", e);
+        }
+        if (!conLugar) {
+            rechazadas.increment();
+            log.warn("Consulta de {} rechazada: ya hay {} consultas en curso a Mercado Pago.", descripcion, maxEnCurso);
+            throw new IllegalStateException("Demasiadas consultas simultáneas a Mercado Pago. Intenta nuevamente.");
+        }
+        long inicio = System.nanoTime();
+        Timer resultado = consultasErrorIo;
         try (Response response = client.newCall(request).execute()) {
             if (!response.isSuccessful()) {
+                resultado = consultasErrorHttp;
                 String responseBody = response.body() != null ? response.body().string() : "No response body";
-                log.error("Error al consultar pago a Mercado Pago: Código={}, Mensaje={}, Body={}",
-                        response.code(), response.message(), responseBody);
+                log.error("Error al consultar {} a Mercado Pago: Código={}, Mensaje={}, Body={}",
+                        descripcion, response.code(), response.message(), responseBody);
                 throw new RuntimeException("Error al consultar pago: " + response.message() + " - " + responseBody);
             }
 
-            ObjectMapper mapper = new ObjectMapper();
-            String responseBody = response.body().string();
+            String responseBody = response.body() != null ? response.body().string() : null;
+            JsonNode pago;
             // Asegúrate de que el body no esté vacío antes de leerlo como JSON
             if (responseBody == null || responseBody.trim().isEmpty()) {
-                log.warn("Respuesta vacía al consultar pago {} de Mercado Pago.", paymentId);
-                return mapper.readTree("{}"); // Devuelve un JSON vacío para evitar NPE
+                log.warn("Respuesta vacía al consultar {} de Mercado Pago.", descripcion);
+                pago = objectMapper.createObjectNode(); // Devuelve un JSON vacío para evitar NPE
+            } else {
+                pago = objectMapper.readTree(responseBody);
             }
-            return mapper.readTree(responseBody);
+            resultado = consultasOk;
+            return pago;
         } catch (IOException e) {
-            log.error("Error de I/O o al procesar la respuesta JSON de Mercado Pago para pago {}: {}", paymentId, e.getMessage(), e);
+            log.error("Error de I/O o al procesar la respuesta JSON de Mercado Pago para {}: {}", descripcion, e.getMessage(), e);
             throw new RuntimeException("Error de conexión/parsing con Mercado Pago", e);
+        } finally {
+            enCurso.release();
+            resultado.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
         }
     }
-}
\ No newline at end of file
+
+    private Timer timer(String resultado) {
+        return Timer.builder("mercadopago.pagos.consultas")
+                .description("Duración de las consultas de pago a Mercado Pago")
+                .tag("resultado", resultado)
+                .register(meterRegistry);
+    }
+}
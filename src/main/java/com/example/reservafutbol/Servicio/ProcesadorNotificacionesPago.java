@@ -0,0 +1,169 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Modelo.NotificacionPago;
+import com.example.reservafutbol.Repositorio.NotificacionPagoRepositorio;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// El webhook de Mercado Pago solo encola el pago notificado en notificaciones_pago y responde. Acá se consulta el pago
+// a MP y se aplica el estado a la reserva en segundo plano, con concurrencia acotada y reintentos con backoff, así una
+// respuesta lenta de MP no hace vencer el webhook ni dispara reenvíos.
+@Service
+public class ProcesadorNotificacionesPago {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcesadorNotificacionesPago.class);
+
+    @Autowired
+    private NotificacionPagoRepositorio notificacionRepositorio;
+
+    @Autowired
+    private ReservaServicio reservaServicio;
+
+    @Autowired
+    private PagoServicio pagoServicio;
+
+    @Value("${pagos.notificaciones.concurrencia:4}")
+    private int concurrencia;
+
+    @Value("${pagos.notificaciones.lote:50}")
+    private int tamanioLote;
+
+    @Value("${pagos.notificaciones.max-intentos:10}")
+    private int maxIntentos;
+
+    @Value("${pagos.notificaciones.backoff-inicial-segundos:15}")
+    private long backoffInicialSegundos;
+
+    @Value("${pagos.notificaciones.backoff-maximo-segundos:1800}")
+    private long backoffMaximoSegundos;
+
+    // Si un pago queda 'PROCESANDO' más que esto (por ejemplo, porque la instancia se reinició), se vuelve a tomar.
+    @Value("${pagos.notificaciones.vencimiento-proceso-segundos:120}")
+    private long vencimientoProcesoSegundos;
+
+    @Value("${pagos.notificaciones.retencion-dias:30}")
+    private long retencionDias;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(concurrencia);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void encolar(String tipo, String paymentId) {
+        notificacionRepositorio.encolar(paymentId, tipo, LocalDateTime.now());
+        log.info("Notificación de pago {} encolada.", paymentId);
+    }
+
+    @Scheduled(fixedDelayString = "${pagos.notificaciones.intervalo-ms:1000}")
+    public void procesarPendientes() {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Long> ids = notificacionRepositorio.findIdsListosParaProcesar(ahora, PageRequest.of(0, tamanioLote));
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        List<Future<?>> procesos = new ArrayList<>();
+        for (Long id : ids) {
+            if (notificacionRepositorio.reclamar(id, ahora, ahora.plusSeconds(vencimientoProcesoSegundos)) == 1) {
+                procesos.add(executor.submit(() -> procesar(id)));
+            }
+        }
+        for (Future<?> proceso : procesos) {
+            try {
+                proceso.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Error inesperado procesando notificación de pago: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+        log.debug("Pasada del procesador de notificaciones de pago: {} pagos procesados.", procesos.size());
+    }
+
+    @Scheduled(cron = "${pagos.notificaciones.limpieza-cron:0 45 4 * * *}", zone = "America/Argentina/Buenos_Aires")
+    public void eliminarProcesadas() {
+        int eliminadas = notificacionRepositorio.eliminarProcesadasAntesDe(LocalDateTime.now().minusDays(retencionDias));
+        log.info("Limpieza de notificaciones de pago: {} procesadas eliminadas.", eliminadas);
+    }
+
+    private void procesar(Long id) {
+        Optional<NotificacionPago> notificacionOpt = notificacionRepositorio.findById(id);
+        if (notificacionOpt.isEmpty()) {
+            return;
+        }
+        NotificacionPago notificacion = notificacionOpt.get();
+        String paymentId = notificacion.getPaymentId();
+        // Se lee antes de consultar a MP: cualquier notificación contada acá ya queda cubierta por esta consulta.
+        int recepciones = notificacion.getRecepciones();
+        try {
+            JsonNode pago = pagoServicio.obtenerPagoPorId(paymentId);
+            String status = pago.hasNonNull("status") ? pago.get("status").asText() : null;
+            String externalReference = pago.hasNonNull("external_reference") ? pago.get("external_reference").asText() : null;
+            if (status == null) {
+                throw new IllegalStateException("Mercado Pago no informó el estado del pago.");
+            }
+            if (externalReference == null || externalReference.isBlank()) {
+                log.error("El pago {} de Mercado Pago no tiene 'external_reference'. No se puede asociar a una reserva.", paymentId);
+                notificacionRepositorio.registrarFallo(id, NotificacionPago.ESTADO_FALLIDA, LocalDateTime.now(), "Pago sin referencia externa");
+                return;
+            }
+
+            if (status.equals(notificacion.getEstadoMp())) {
+                log.debug("Pago {} sin cambios (estado '{}' ya aplicado). Notificación repetida descartada.", paymentId, status);
+            } else {
+                reservaServicio.aplicarPagoMercadoPago(externalReference, paymentId, status);
+            }
+            notificacionRepositorio.marcarProcesada(id, recepciones, status, LocalDateTime.now());
+        } catch (Exception e) {
+            int intentos = notificacion.getIntentos() + 1;
+            String error = e.getMessage() != null && e.getMessage().length() > 1000 ? e.getMessage().substring(0, 1000) : e.getMessage();
+            if (intentos >= maxIntentos) {
+                log.error("Notificación del pago {} descartada tras {} intentos: {}", paymentId, intentos, error);
+                notificacionRepositorio.registrarFallo(id, NotificacionPago.ESTADO_FALLIDA, LocalDateTime.now(), error);
+            } else {
+                LocalDateTime proximoIntento = LocalDateTime.now().plusSeconds(calcularBackoffSegundos(intentos));
+                log.warn("Fallo al procesar el pago {} (intento {}). Se reintenta a las {}: {}", paymentId, intentos, proximoIntento, error);
+                notificacionRepositorio.registrarFallo(id, NotificacionPago.ESTADO_PENDIENTE, proximoIntento, error);
+            }
+        }
+    }
+
+    private long calcularBackoffSegundos(int intentos) {
+        long backoff = backoffInicialSegundos << Math.min(intentos - 1, 20);
+        return Math.min(backoff, backoffMaximoSegundos);
+    }
+}
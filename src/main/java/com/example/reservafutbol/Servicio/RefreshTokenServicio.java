@@ -0,0 +1,147 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Modelo.RefreshToken;
+import com.example.reservafutbol.Modelo.User;
+import com.example.reservafutbol.Repositorio.RefreshTokenRepositorio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+// Emisión, rotación y revocación de refresh tokens. Renovar el access token con un refresh token no pasa por
+// BCrypt ni por el AuthenticationManager: es una búsqueda por hash y un par de escrituras.
+@Service
+public class RefreshTokenServicio {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenServicio.class);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Autowired
+    private RefreshTokenRepositorio refreshTokenRepositorio;
+
+    @Value("${jwt.refresh.expiracion-dias:14}")
+    private long expiracionDias;
+
+    // Ventana en la que reusar un token recién rotado se rechaza sin revocar la familia
+    // (dos pestañas que renuevan a la vez), en lugar de tratarlo como robo.
+    @Value("${jwt.refresh.gracia-segundos:10}")
+    private long graciaSegundos;
+
+    // Vida del código que se entrega en la redirección de Google: viaja en la URL, así que vence enseguida
+    // y el frontend lo canjea en /api/auth/refresh por un refresh token normal.
+    @Value("${jwt.refresh.codigo-oauth-segundos:120}")
+    private long codigoOauthSegundos;
+
+    // Resultado de una renovación: el usuario (con sus roles cargados) y el refresh token que reemplaza al usado.
+    public record Renovacion(User usuario, String refreshToken) {
+    }
+
+    @Transactional
+    public String emitir(User usuario) {
+        return crear(usuario, UUID.randomUUID().toString(), LocalDateTime.now().plusDays(expiracionDias));
+    }
+
+    // Es un refresh token de un solo uso y vida corta: al rotarlo se emite uno con la expiración normal,
+    // y reusarlo revoca la familia igual que con cualquier otro.
+    @Transactional
+    public String emitirCodigoOauth(User usuario) {
+        return crear(usuario, UUID.randomUUID().toString(), LocalDateTime.now().plusSeconds(codigoOauthSegundos));
+    }
+
+    @Transactional(noRollbackFor = SecurityException.class)
+    public Renovacion rotar(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            throw new IllegalArgumentException("El refresh token es obligatorio.");
+        }
+        RefreshToken actual = refreshTokenRepositorio.findParaRotar(hash(refreshToken))
+                .orElseThrow(() -> new SecurityException("Refresh token inválido."));
+        LocalDateTime ahora = LocalDateTime.now();
+
+        if (actual.isRevocado()) {
+            if (actual.getUsadoEn() != null && actual.getUsadoEn().plusSeconds(graciaSegundos).isAfter(ahora)) {
+                throw new SecurityException("El refresh token ya fue renovado.");
+            }
+            // La revocación tiene que quedar guardada aunque se rechace la renovación (noRollbackFor).
+            int revocados = refreshTokenRepositorio.revocarFamilia(actual.getFamilia());
+            log.warn("Reuso de refresh token revocado para {}. Se revocaron {} tokens de la familia {}.",
+                    actual.getUsuario().getUsername(), revocados, actual.getFamilia());
+            throw new SecurityException("Refresh token inválido.");
+        }
+        if (actual.getExpiraEn().isBefore(ahora)) {
+            throw new SecurityException("El refresh token expiró. Iniciá sesión nuevamente.");
+        }
+        User usuario = actual.getUsuario();
+        if (!usuario.isEnabled()) {
+            refreshTokenRepositorio.revocarFamilia(actual.getFamilia());
+            throw new SecurityException("La cuenta no está habilitada.");
+        }
+
+        actual.setRevocado(true);
+        actual.setUsadoEn(ahora);
+        String nuevo = crear(usuario, actual.getFamilia(), ahora.plusDays(expiracionDias));
+        log.debug("Refresh token rotado para {} (familia {}).", usuario.getUsername(), actual.getFamilia());
+        return new Renovacion(usuario, nuevo);
+    }
+
+    // Logout: invalida el token y todos los de su familia. Un token desconocido se ignora.
+    @Transactional
+    public void revocar(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return;
+        }
+        refreshTokenRepositorio.findByTokenHash(hash(refreshToken))
+                .ifPresent(token -> refreshTokenRepositorio.revocarFamilia(token.getFamilia()));
+    }
+
+    // Al cambiar la contraseña se cierran todas las sesiones renovables del usuario.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void revocarTodos(Long usuarioId) {
+        int revocados = refreshTokenRepositorio.revocarPorUsuario(usuarioId);
+        log.info("Revocados {} refresh tokens del usuario ID {}.", revocados, usuarioId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void eliminarDeUsuario(Long usuarioId) {
+        refreshTokenRepositorio.eliminarPorUsuario(usuarioId);
+    }
+
+    // Los tokens vencidos ya no sirven ni para detectar reuso: se borran un día después de expirar.
+    @Scheduled(cron = "${jwt.refresh.limpieza-cron:0 15 4 * * *}", zone = "America/Argentina/Buenos_Aires")
+    @Transactional
+    public void eliminarVencidos() {
+        int eliminados = refreshTokenRepositorio.eliminarVencidos(LocalDateTime.now().minusDays(1));
+        if (eliminados > 0) {
+            log.info("Eliminados {} refresh tokens vencidos.", eliminados);
+        }
+    }
+
+    private String crear(User usuario, String familia, LocalDateTime expiraEn) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepositorio.save(new RefreshToken(hash(token), usuario, familia, expiraEn));
+        return token;
+    }
+
+    private static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible.", e);
+        }
+    }
+}
@@ -1,27 +1,35 @@
 package com.example.reservafutbol.Servicio;
 
+import com.example.reservafutbol.DTO.FiltroReservas;
 import com.example.reservafutbol.Modelo.Complejo;
-import com.example.reservafutbol.Modelo.ERole;
 import com.example.reservafutbol.Modelo.Reserva;
 import com.example.reservafutbol.Modelo.User;
 import com.example.reservafutbol.Repositorio.ComplejoRepositorio;
+import com.example.reservafutbol.Repositorio.EstadisticaReservaRepositorio;
 import com.example.reservafutbol.Repositorio.ReservaRepositorio;
 import com.example.reservafutbol.Repositorio.UsuarioRepositorio;
+import com.example.reservafutbol.payload.response.DisponibilidadGrillaResponse;
 import com.example.reservafutbol.payload.response.EstadisticasResponse;
+import com.example.reservafutbol.payload.response.PaginaCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -41,30 +49,49 @@ public class ReservaServicio {
     private ComplejoRepositorio complejoRepositorio;
 
     @Autowired
-    private EmailService emailService;
+    private NotificacionOutboxServicio notificacionOutbox;
+
+    @Autowired
+    private OcupacionCanchasIndice ocupacionIndice;
+
+    @Autowired
+    private BloqueoSlotsReserva bloqueoSlots;
+
+    @Autowired
+    private EstadisticasRollupServicio rollupEstadisticas;
+
+    @Autowired
+    private EstadisticaReservaRepositorio estadisticaRepositorio;
+
+    @Autowired
+    private EstadoUsuariosCache estadoUsuarios;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     @Value("${admin.email}")
     private String adminEmail;
 
     private static final int SLOT_DURATION_MINUTES = 60;
     private static final ZoneId ARGENTINA_ZONE_ID = ZoneId.of("America/Argentina/Buenos_Aires");
+    private static final int MAX_DIAS_GRILLA = 31;
+    private static final int MAX_TAMANIO_PAGINA = 500;
+    private static final LocalDateTime FECHA_MINIMA_CONSULTA = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime FECHA_MAXIMA_CONSULTA = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final String SQL_ACTUALIZAR_PAGO = "UPDATE reservas SET estado = ?, pagada = ?, metodo_pago = ?, " +
+            "mercado_pago_payment_id = ?, pago_a_devolver = ? WHERE id = ? AND estado = ?";
 
     @Transactional(readOnly = true)
     public List<Reserva> listarReservasPorComplejo(Long complejoId, String requesterUsername) {
         log.info("Buscando reservas para complejo ID: {} por usuario: {}", complejoId, requesterUsername);
-        User requester = usuarioRepositorio.findByUsername(requesterUsername)
-                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + requesterUsername));
+        EstadoUsuariosCache.EstadoUsuario requester = estadoUsuarios.obtenerExistente(requesterUsername);
 
-        if (requester.getRoles().stream().anyMatch(r -> r.getName().equals(ERole.ROLE_ADMIN))) {
+        if (requester.esAdmin()) {
             return reservaRepositorio.findByComplejoId(complejoId);
         }
 
-        if (requester.getRoles().stream().anyMatch(r -> r.getName().equals(ERole.ROLE_COMPLEX_OWNER))) {
-            Complejo complejo = complejoRepositorio.findById(complejoId)
-                    .orElseThrow(() -> new IllegalArgumentException("Complejo no encontrado con ID: " + complejoId));
-            if (complejo.getPropietario() == null || !complejo.getPropietario().getId().equals(requester.getId())) {
-                throw new SecurityException("Acceso denegado: Este complejo no te pertenece.");
-            }
+        if (requester.esPropietario()) {
+            verificarDuenio(requester, complejoId);
             return reservaRepositorio.findByComplejoId(complejoId);
         }
 
@@ -72,22 +99,16 @@ public class ReservaServicio {
     }
 
     @Transactional(readOnly = true)
-    public List<Reserva> listarReservasPorComplejoYTipo(Long complejoId, String tipoCancha, String requesterUsername) {
-        log.info("Buscando reservas de tipo '{}' en complejo ID: {} por usuario: {}", tipoCancha, complejoId, requesterUsername);
-        User requester = usuarioRepositorio.findByUsername(requesterUsername)
-                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + requesterUsername));
-
-        if (requester.getRoles().stream().noneMatch(r -> r.getName().equals(ERole.ROLE_ADMIN))) {
-            Complejo complejo = complejoRepositorio.findById(complejoId)
-                    .orElseThrow(() -> new IllegalArgumentException("Complejo no encontrado con ID: " + complejoId));
-            if (complejo.getPropietario() == null || !complejo.getPropietario().getId().equals(requester.getId())) {
-                throw new SecurityException("Acceso denegado: Este complejo no te pertenece.");
-            }
+    public PaginaCursor<Reserva> listarReservasPorComplejoYTipo(Long complejoId, String tipoCancha, FiltroReservas filtro, String requesterUsername) {
+        log.info("Buscando reservas de tipo '{}' en complejo ID: {} por usuario: {} ({})", tipoCancha, complejoId, requesterUsername, filtro);
+        EstadoUsuariosCache.EstadoUsuario requester = estadoUsuarios.obtenerExistente(requesterUsername);
+
+        if (!requester.esAdmin()) {
+            verificarDuenio(requester, complejoId);
         }
 
-        return reservaRepositorio.findAll().stream()
-                .filter(r -> r.getComplejo().getId().equals(complejoId) && r.getTipoCanchaReservada().equals(tipoCancha))
-                .collect(Collectors.toList());
+        return paginar(filtro, (desde, hasta, todos, estados, cursorFecha, cursorId, pageable) ->
+                reservaRepositorio.findPaginaPorComplejoYTipo(complejoId, tipoCancha, desde, hasta, todos, estados, cursorFecha, cursorId, pageable));
     }
 
     @Transactional
@@ -123,6 +144,9 @@ public class ReservaServicio {
             throw new IllegalArgumentException("No se pueden crear reservas para fechas u horas pasadas.");
         }
 
+        // Sin este bloqueo dos reservas concurrentes podrían ver el mismo conflicto y quedarse con la misma instancia.
+        bloqueoSlots.bloquearHastaFinDeTransaccion(complejoAsignado.getId(), reserva.getTipoCanchaReservada(), reserva.getFechaHora());
+
         List<Reserva> conflictosExistentes = reservaRepositorio.findConflictingReservationsForPool(
                 complejoAsignado.getId(),
                 reserva.getTipoCanchaReservada(),
@@ -167,25 +191,15 @@ public class ReservaServicio {
         reserva.setMercadoPagoPaymentId(null);
 
         Reserva reservaGuardada = reservaRepositorio.save(reserva);
+        ocupacionIndice.registrar(reservaGuardada);
+        rollupEstadisticas.registrarAlta(reservaGuardada);
         log.info("Reserva creada con ID: {} para complejo '{}' (tipo: '{}'), asignada a: '{}'",
                 reservaGuardada.getId(), complejoAsignado.getNombre(), reserva.getTipoCanchaReservada(), nombreCanchaAsignada);
 
-        try {
-            emailService.sendNewReservationNotification(reservaGuardada, adminEmail);
-            log.info("Notificación de nueva reserva enviada al administrador general ({}).", adminEmail);
-        } catch (Exception e) {
-            log.error("Error al enviar notificación de nueva reserva al administrador general: {}", e.getMessage(), e);
-        }
-
+        // Las notificaciones se guardan en el outbox dentro de esta transacción y se envían en segundo plano.
+        notificacionOutbox.encolarNuevaReserva(reservaGuardada, adminEmail);
         if (reserva.getComplejo() != null && reserva.getComplejo().getPropietario() != null) {
-            try {
-                String ownerEmail = reserva.getComplejo().getPropietario().getUsername();
-                emailService.sendNewReservationNotification(reservaGuardada, ownerEmail);
-                log.info("Notificación de nueva reserva enviada al dueño del complejo {}.", ownerEmail);
-            }
-            catch (Exception e) {
-                log.error("Error al enviar notificación de nueva reserva al dueño del complejo: {}", e.getMessage(), e);
-            }
+            notificacionOutbox.encolarNuevaReserva(reservaGuardada, reserva.getComplejo().getPropietario().getUsername());
         }
 
         return reservaGuardada;
@@ -203,11 +217,10 @@ public class ReservaServicio {
         Reserva r = reservaRepositorio.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Reserva no encontrada con ID: " + id));
 
-        User confirmador = usuarioRepositorio.findByUsername(confirmadorUsername)
-                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + confirmadorUsername));
+        EstadoUsuariosCache.EstadoUsuario confirmador = estadoUsuarios.obtenerExistente(confirmadorUsername);
 
-        if (confirmador.getRoles().stream().noneMatch(role -> role.getName().equals(ERole.ROLE_ADMIN))) {
-            if (r.getComplejo() == null || r.getComplejo().getPropietario() == null || !r.getComplejo().getPropietario().getId().equals(confirmador.getId())) {
+        if (!confirmador.esAdmin()) {
+            if (r.getComplejo() == null || !confirmador.esDuenioDe(r.getComplejo().getId())) {
                 throw new SecurityException("Acceso denegado: No tienes permisos para confirmar esta reserva.");
             }
         }
@@ -216,9 +229,12 @@ public class ReservaServicio {
             throw new IllegalStateException("La reserva ya está pagada o cancelada. No se puede confirmar.");
         }
 
+        EstadisticasRollupServicio.Huella anterior = EstadisticasRollupServicio.Huella.de(r);
         r.setEstado("confirmada");
 
-        Reserva reservaConfirmada = reservaRepositorio.save(r);
+        Reserva reservaConfirmada = reservaRepositorio.saveAndFlush(r);
+        ocupacionIndice.registrar(reservaConfirmada);
+        rollupEstadisticas.registrarCambio(anterior, reservaConfirmada);
         log.info("Reserva con ID: {} confirmada exitosamente. Nuevo estado: {}", id, reservaConfirmada.getEstado());
         return reservaConfirmada;
     }
@@ -229,58 +245,49 @@ public class ReservaServicio {
         Reserva r = reservaRepositorio.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Reserva no encontrada con ID: " + id));
 
-        User eliminador = usuarioRepositorio.findByUsername(eliminadorUsername)
-                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + eliminadorUsername));
+        EstadoUsuariosCache.EstadoUsuario eliminador = estadoUsuarios.obtenerExistente(eliminadorUsername);
 
-        if (eliminador.getRoles().stream().noneMatch(role -> role.getName().equals(ERole.ROLE_ADMIN))) {
-            if (r.getComplejo() == null || r.getComplejo().getPropietario() == null || !r.getComplejo().getPropietario().getId().equals(eliminador.getId())) {
+        if (!eliminador.esAdmin()) {
+            if (r.getComplejo() == null || !eliminador.esDuenioDe(r.getComplejo().getId())) {
                 throw new SecurityException("Acceso denegado: No tienes permisos para eliminar esta reserva.");
             }
         }
 
+        rollupEstadisticas.registrarBaja(EstadisticasRollupServicio.Huella.de(r));
         reservaRepositorio.deleteById(id);
+        if (r.getComplejo() != null) {
+            ocupacionIndice.quitar(r.getComplejo().getId(), r.getTipoCanchaReservada(), r.getFechaHora(), id);
+        }
         log.info("Reserva con ID: {} eliminada exitosamente.", id);
     }
 
     @Transactional(readOnly = true)
-    public List<Reserva> listarTodas(String requesterUsername) {
-        log.info("Listando todas las reservas para: {}", requesterUsername);
-        User requester = usuarioRepositorio.findByUsername(requesterUsername)
-                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + requesterUsername));
+    public PaginaCursor<Reserva> listarTodas(String requesterUsername, FiltroReservas filtro) {
+        log.info("Listando reservas para: {} ({})", requesterUsername, filtro);
+        EstadoUsuariosCache.EstadoUsuario requester = estadoUsuarios.obtenerExistente(requesterUsername);
 
-        if (requester.getRoles().stream().anyMatch(r -> r.getName().equals(ERole.ROLE_ADMIN))) {
+        if (requester.esAdmin()) {
             log.info("Usuario {} es ADMIN, listando todas las reservas del sistema.", requesterUsername);
-            return reservaRepositorio.findAll();
-        } else if (requester.getRoles().stream().anyMatch(r -> r.getName().equals(ERole.ROLE_COMPLEX_OWNER))) {
-            log.info("Generando estadísticas para complejos de propietario {}.", requesterUsername);
-            List<Complejo> complejosDelPropietario = complejoRepositorio.findByPropietario(requester);
-
-            if (complejosDelPropietario.isEmpty()) {
-                log.warn("El propietario {} no tiene complejos asignados, devolviendo lista de reservas vacía.", requesterUsername);
-                return Collections.emptyList();
-            }
-
-            List<Long> idsComplejos = complejosDelPropietario.stream()
-                    .map(Complejo::getId)
-                    .collect(Collectors.toList());
-
-            return reservaRepositorio.findByComplejoIdIn(idsComplejos);
+            return paginar(filtro, reservaRepositorio::findPagina);
+        } else if (requester.esPropietario()) {
+            return listarDeComplejosDelPropietario(requesterUsername, requester.complejoIds(), filtro);
         } else {
             log.warn("Usuario {} no tiene rol de ADMIN o COMPLEX_OWNER para acceder a esta función.", requesterUsername);
-            return Collections.emptyList();
+            return new PaginaCursor<>(Collections.emptyList(), null);
         }
     }
 
     @Transactional(readOnly = true)
-    public List<Reserva> obtenerReservasPorUsername(String username) {
+    public PaginaCursor<Reserva> obtenerReservasPorUsername(String username, FiltroReservas filtro) {
         log.debug("Buscando usuario con username/email: {}", username);
         User usuario = usuarioRepositorio.findByUsername(username)
                 .orElseThrow(() -> {
                     log.warn("Usuario no encontrado para obtener reservas: {}", username);
                     return new UsernameNotFoundException("Usuario no encontrado: " + username);
                 });
-        log.info("Buscando reservas (con usuario y complejo) para Usuario ID: {}", usuario.getId());
-        return reservaRepositorio.findByUsuario(usuario);
+        log.info("Buscando reservas para Usuario ID: {} ({})", usuario.getId(), filtro);
+        return paginar(filtro, (desde, hasta, todos, estados, cursorFecha, cursorId, pageable) ->
+                reservaRepositorio.findPaginaPorUsuario(usuario, desde, hasta, todos, estados, cursorFecha, cursorId, pageable));
     }
 
     @Transactional
@@ -288,11 +295,10 @@ public class ReservaServicio {
         log.info("Intentando marcar como pagada reserva con ID: {} por usuario: {}", id, pagadorUsername);
         Reserva reserva = reservaRepositorio.findById(id).orElseThrow(() -> new RuntimeException("Reserva no encontrada"));
 
-        User pagador = usuarioRepositorio.findByUsername(pagadorUsername)
-                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + pagadorUsername));
+        EstadoUsuariosCache.EstadoUsuario pagador = estadoUsuarios.obtenerExistente(pagadorUsername);
 
-        if (pagador.getRoles().stream().noneMatch(role -> role.getName().equals(ERole.ROLE_ADMIN))) {
-            if (reserva.getComplejo() == null || reserva.getComplejo().getPropietario() == null || !reserva.getComplejo().getPropietario().getId().equals(pagador.getId())) {
+        if (!pagador.esAdmin()) {
+            if (reserva.getComplejo() == null || !pagador.esDuenioDe(reserva.getComplejo().getId())) {
                 throw new SecurityException("Acceso denegado: No tienes permisos para marcar esta reserva como pagada.");
             }
         }
@@ -301,27 +307,27 @@ public class ReservaServicio {
             throw new IllegalStateException("La reserva ya ha sido marcada como pagada.");
         }
 
+        EstadisticasRollupServicio.Huella anterior = EstadisticasRollupServicio.Huella.de(reserva);
         reserva.setPagada(true);
         reserva.setMetodoPago(metodoPago);
         reserva.setFechaPago(LocalDateTime.now());
         reserva.setMercadoPagoPaymentId(mercadoPagoPaymentId);
         reserva.setEstado("pagada");
 
-        Reserva updatedReserva = reservaRepositorio.save(reserva);
+        Reserva updatedReserva = reservaRepositorio.saveAndFlush(reserva);
+        ocupacionIndice.registrar(updatedReserva);
+        rollupEstadisticas.registrarCambio(anterior, updatedReserva);
         log.info("Reserva con ID {} marcada como pagada. Nuevo estado: {}", updatedReserva.getId(), updatedReserva.getEstado());
         return updatedReserva;
     }
 
-    @Transactional(readOnly = true)
+    // Sin @Transactional: se responde desde OcupacionCanchasIndice y solo se accede a la base al cargar un día por primera vez.
     public int countAvailableCanchasForSlot(Long complejoId, String tipoCancha, LocalDate fecha, LocalTime hora) {
         log.info("Contando canchas de tipo '{}' disponibles en complejo ID: {} para {} a las {}", tipoCancha, complejoId, fecha, hora);
 
-        Complejo complejo = complejoRepositorio.findById(complejoId)
-                .orElseThrow(() -> new IllegalArgumentException("Complejo no encontrado con ID: " + complejoId));
-
-        Integer totalCanchasDeEsteTipo = complejo.getCanchaCounts().getOrDefault(tipoCancha, 0);
+        int totalCanchasDeEsteTipo = ocupacionIndice.capacidad(complejoId, tipoCancha);
         if (totalCanchasDeEsteTipo <= 0) {
-            log.debug("Complejo '{}' no tiene canchas de tipo '{}' configuradas o la cantidad es 0.", complejo.getNombre(), tipoCancha);
+            log.debug("Complejo ID {} no tiene canchas de tipo '{}' configuradas o la cantidad es 0.", complejoId, tipoCancha);
             return 0;
         }
 
@@ -334,31 +340,18 @@ public class ReservaServicio {
             return 0;
         }
 
-        List<Reserva> conflictos = reservaRepositorio.findConflictingReservationsForPool(
-                complejoId,
-                tipoCancha,
-                slotStartTime,
-                slotEndTime
-        );
+        int bookedCount = ocupacionIndice.contarOcupadas(complejoId, tipoCancha, slotStartTime, slotEndTime);
+        int availableCount = Math.max(0, totalCanchasDeEsteTipo - bookedCount);
 
-        int bookedCount = conflictos.size();
-        int availableCount = totalCanchasDeEsteTipo - bookedCount;
-
-        availableCount = Math.max(0, availableCount);
-
-        log.debug("Encontradas {} canchas de tipo '{}' disponibles en complejo '{}' para {} a las {}. (Total: {}, Reservadas: {})",
-                availableCount, tipoCancha, complejo.getNombre(), fecha, hora, totalCanchasDeEsteTipo, bookedCount);
+        log.debug("Encontradas {} canchas de tipo '{}' disponibles en complejo ID {} para {} a las {}. (Total: {}, Reservadas: {})",
+                availableCount, tipoCancha, complejoId, fecha, hora, totalCanchasDeEsteTipo, bookedCount);
         return availableCount;
     }
 
-    @Transactional(readOnly = true)
     public Optional<String> generateAssignedCanchaName(Long complejoId, String tipoCancha, LocalDate fecha, LocalTime hora) {
         log.info("Generando nombre de cancha asignada para complejo ID: {} tipo: {} en slot: {}", complejoId, tipoCancha, fecha + " " + hora);
 
-        Complejo complejo = complejoRepositorio.findById(complejoId)
-                .orElseThrow(() -> new IllegalArgumentException("Complejo no encontrado con ID: " + complejoId));
-
-        Integer totalCanchasDeEsteTipo = complejo.getCanchaCounts().getOrDefault(tipoCancha, 0);
+        int totalCanchasDeEsteTipo = ocupacionIndice.capacidad(complejoId, tipoCancha);
         if (totalCanchasDeEsteTipo <= 0) {
             return Optional.empty();
         }
@@ -366,16 +359,7 @@ public class ReservaServicio {
         LocalDateTime slotStartTime = LocalDateTime.of(fecha, hora);
         LocalDateTime slotEndTime = slotStartTime.plusMinutes(SLOT_DURATION_MINUTES);
 
-        List<Reserva> conflictos = reservaRepositorio.findConflictingReservationsForPool(
-                complejoId,
-                tipoCancha,
-                slotStartTime,
-                slotEndTime
-        );
-
-        Set<String> nombresCanchasOcupadasEnSlot = conflictos.stream()
-                .map(Reserva::getNombreCanchaAsignada)
-                .collect(Collectors.toSet());
+        Set<String> nombresCanchasOcupadasEnSlot = ocupacionIndice.nombresOcupados(complejoId, tipoCancha, slotStartTime, slotEndTime);
 
         for (int i = 1; i <= totalCanchasDeEsteTipo; i++) {
             String posibleNombre = tipoCancha + " - Instancia " + i;
@@ -384,35 +368,108 @@ public class ReservaServicio {
                 return Optional.of(posibleNombre);
             }
         }
-        log.debug("Todas las canchas de tipo '{}' en complejo '{}' están ocupadas para el slot {}.", tipoCancha, complejo.getNombre(), fecha + " " + hora);
+        log.debug("Todas las canchas de tipo '{}' en complejo ID {} están ocupadas para el slot {}.", tipoCancha, complejoId, fecha + " " + hora);
         return Optional.empty();
     }
 
+    @Transactional(readOnly = true)
+    public DisponibilidadGrillaResponse calcularGrillaDisponibilidad(Long complejoId, LocalDate desde, LocalDate hasta) {
+        log.info("Calculando grilla de disponibilidad para complejo ID: {} entre {} y {}", complejoId, desde, hasta);
+        if (hasta.isBefore(desde)) {
+            throw new IllegalArgumentException("La fecha 'hasta' no puede ser anterior a 'desde'.");
+        }
+        if (ChronoUnit.DAYS.between(desde, hasta) >= MAX_DIAS_GRILLA) {
+            throw new IllegalArgumentException("El rango de fechas no puede superar los " + MAX_DIAS_GRILLA + " días.");
+        }
+
+        Complejo complejo = complejoRepositorio.findById(complejoId)
+                .orElseThrow(() -> new IllegalArgumentException("Complejo no encontrado con ID: " + complejoId));
+        Map<String, Integer> canchaCounts = complejo.getCanchaCounts() != null ? new HashMap<>(complejo.getCanchaCounts()) : new HashMap<>();
+
+        List<LocalTime> slots = new ArrayList<>();
+        LocalTime apertura = complejo.getHorarioApertura();
+        LocalTime cierre = complejo.getHorarioCierre();
+        // Un cierre igual o anterior a la apertura (por ej. 00:00) se interpreta como fin del día.
+        int minutosCierre = cierre.isAfter(apertura) ? cierre.toSecondOfDay() / 60 : 24 * 60;
+        for (int minuto = apertura.toSecondOfDay() / 60; minuto + SLOT_DURATION_MINUTES <= minutosCierre; minuto += SLOT_DURATION_MINUTES) {
+            slots.add(LocalTime.of(minuto / 60, minuto % 60));
+        }
+
+        // Una sola consulta por rango; se incluye la hora previa porque una reserva de las 23:30 ocupa el slot de las 00:00.
+        List<Reserva> reservas = reservaRepositorio.findActivasPorComplejoEntre(
+                complejoId,
+                desde.atStartOfDay().minusMinutes(SLOT_DURATION_MINUTES),
+                hasta.plusDays(1).atStartOfDay()
+        );
+
+        Map<String, int[]> ocupadasPorDiaYTipo = new HashMap<>();
+        for (Reserva reserva : reservas) {
+            LocalDateTime inicioReserva = reserva.getFechaHora();
+            LocalDateTime finReserva = inicioReserva.plusMinutes(SLOT_DURATION_MINUTES);
+            for (LocalDate fecha = inicioReserva.toLocalDate(); !fecha.isAfter(finReserva.toLocalDate()); fecha = fecha.plusDays(1)) {
+                if (fecha.isBefore(desde) || fecha.isAfter(hasta)) {
+                    continue;
+                }
+                int[] ocupadas = ocupadasPorDiaYTipo.computeIfAbsent(fecha + "|" + reserva.getTipoCanchaReservada(), k -> new int[slots.size()]);
+                for (int i = 0; i < slots.size(); i++) {
+                    LocalDateTime slotStartTime = fecha.atTime(slots.get(i));
+                    if (inicioReserva.isBefore(slotStartTime.plusMinutes(SLOT_DURATION_MINUTES)) && finReserva.isAfter(slotStartTime)) {
+                        ocupadas[i]++;
+                    }
+                }
+            }
+        }
+
+        LocalDateTime nowArgentina = ZonedDateTime.now(ARGENTINA_ZONE_ID).toLocalDateTime();
+        Map<String, Map<String, Map<String, Integer>>> disponibilidad = new LinkedHashMap<>();
+        for (LocalDate fecha = desde; !fecha.isAfter(hasta); fecha = fecha.plusDays(1)) {
+            Map<String, Map<String, Integer>> porTipo = new TreeMap<>();
+            for (Map.Entry<String, Integer> tipo : canchaCounts.entrySet()) {
+                int total = tipo.getValue() != null ? tipo.getValue() : 0;
+                int[] ocupadas = ocupadasPorDiaYTipo.getOrDefault(fecha + "|" + tipo.getKey(), new int[slots.size()]);
+                Map<String, Integer> porHora = new LinkedHashMap<>();
+                for (int i = 0; i < slots.size(); i++) {
+                    LocalDateTime slotEndTime = fecha.atTime(slots.get(i)).plusMinutes(SLOT_DURATION_MINUTES);
+                    int disponibles = slotEndTime.isBefore(nowArgentina) ? 0 : Math.max(0, total - ocupadas[i]);
+                    porHora.put(slots.get(i).toString(), disponibles);
+                }
+                porTipo.put(tipo.getKey(), porHora);
+            }
+            disponibilidad.put(fecha.toString(), porTipo);
+        }
+
+        log.debug("Grilla calculada para complejo ID {}: {} días, {} slots por día, {} reservas activas en el rango.",
+                complejoId, disponibilidad.size(), slots.size(), reservas.size());
+        return new DisponibilidadGrillaResponse(complejoId, apertura, cierre, canchaCounts, disponibilidad);
+    }
+
     @Transactional(readOnly = true)
     public EstadisticasResponse calcularEstadisticas(String requesterUsername) {
         log.info("Calculando estadísticas para: {}", requesterUsername);
-        User requester = usuarioRepositorio.findByUsername(requesterUsername)
-                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + requesterUsername));
+        EstadoUsuariosCache.EstadoUsuario requester = estadoUsuarios.obtenerExistente(requesterUsername);
 
-        List<Reserva> reservasParaEstadisticas;
+        List<EstadisticaReservaRepositorio.ConteoPorEstado> porEstado;
+        List<EstadisticaReservaRepositorio.ConteoPorClave> porTipo;
+        List<EstadisticaReservaRepositorio.ConteoPorHora> porHora;
 
-        if (requester.getRoles().stream().anyMatch(r -> r.getName().equals(ERole.ROLE_ADMIN))) {
+        if (requester.esAdmin()) {
             log.info("Generando estadísticas globales (ADMIN).");
-            reservasParaEstadisticas = reservaRepositorio.findAll();
-        } else if (requester.getRoles().stream().anyMatch(r -> r.getName().equals(ERole.ROLE_COMPLEX_OWNER))) {
+            porEstado = estadisticaRepositorio.contarPorEstado();
+            porTipo = estadisticaRepositorio.contarPorTipoCancha();
+            porHora = estadisticaRepositorio.contarPorHora();
+        } else if (requester.esPropietario()) {
             log.info("Generando estadísticas para complejos de propietario {}.", requesterUsername);
-            List<Complejo> complejosDelPropietario = complejoRepositorio.findByPropietario(requester);
+            List<Long> idsComplejos = requester.complejoIds();
 
-            if (complejosDelPropietario.isEmpty()) {
+            if (idsComplejos.isEmpty()) {
                 log.warn("Propietario {} no tiene complejos, no hay estadísticas para mostrar.", requesterUsername);
                 return new EstadisticasResponse(
                         BigDecimal.ZERO, 0L, 0L, 0L, new HashMap<>(), new HashMap<>()
                 );
             }
-            List<Long> idsComplejos = complejosDelPropietario.stream()
-                    .map(Complejo::getId)
-                    .collect(Collectors.toList());
-            reservasParaEstadisticas = reservaRepositorio.findByComplejoIdIn(idsComplejos);
+            porEstado = estadisticaRepositorio.contarPorEstadoEnComplejos(idsComplejos);
+            porTipo = estadisticaRepositorio.contarPorTipoCanchaEnComplejos(idsComplejos);
+            porHora = estadisticaRepositorio.contarPorHoraEnComplejos(idsComplejos);
         } else {
             log.warn("Usuario {} no tiene rol de ADMIN o COMPLEX_OWNER para ver estadísticas.", requesterUsername);
             return new EstadisticasResponse(
@@ -420,29 +477,33 @@ public class ReservaServicio {
             );
         }
 
-        BigDecimal ingresosTotalesConfirmados = reservasParaEstadisticas.stream()
-                .filter(reserva -> "pagada".equalsIgnoreCase(reserva.getEstado()))
-                .map(Reserva::getPrecio)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        Long totalReservasConfirmadas = reservasParaEstadisticas.stream()
-                .filter(reserva -> "pagada".equalsIgnoreCase(reserva.getEstado()) || "confirmada".equalsIgnoreCase(reserva.getEstado()) || "pendiente_pago_efectivo".equalsIgnoreCase(reserva.getEstado()))
-                .count();
-
-        Long totalReservasPendientes = reservasParaEstadisticas.stream()
-                .filter(reserva -> "pendiente".equalsIgnoreCase(reserva.getEstado()) || "pendiente_pago_mp".equalsIgnoreCase(reserva.getEstado()))
-                .count();
-
-        Long totalReservasCanceladas = reservasParaEstadisticas.stream()
-                .filter(reserva -> "cancelada".equalsIgnoreCase(reserva.getEstado()) || "rechazada_pago_mp".equalsIgnoreCase(reserva.getEstado()))
-                .count();
+        BigDecimal ingresosTotalesConfirmados = BigDecimal.ZERO;
+        long totalReservasConfirmadas = 0L;
+        long totalReservasPendientes = 0L;
+        long totalReservasCanceladas = 0L;
+        for (EstadisticaReservaRepositorio.ConteoPorEstado conteo : porEstado) {
+            String estado = conteo.getEstado() != null ? conteo.getEstado() : "";
+            switch (estado) {
+                case "pagada" -> {
+                    ingresosTotalesConfirmados = conteo.getMonto() != null ? conteo.getMonto() : BigDecimal.ZERO;
+                    totalReservasConfirmadas += conteo.getCantidad();
+                }
+                case "confirmada", "pendiente_pago_efectivo" -> totalReservasConfirmadas += conteo.getCantidad();
+                case "pendiente", "pendiente_pago_mp" -> totalReservasPendientes += conteo.getCantidad();
+                case "cancelada", "rechazada_pago_mp" -> totalReservasCanceladas += conteo.getCantidad();
+                default -> { }
+            }
+        }
 
-        Map<String, Long> reservasPorTipoCancha = reservasParaEstadisticas.stream()
-                .collect(Collectors.groupingBy(Reserva::getTipoCanchaReservada, Collectors.counting()));
+        Map<String, Long> reservasPorTipoCancha = new HashMap<>();
+        for (EstadisticaReservaRepositorio.ConteoPorClave conteo : porTipo) {
+            reservasPorTipoCancha.put(conteo.getClave(), conteo.getCantidad());
+        }
 
-        Map<String, Long> horariosPico = reservasParaEstadisticas.stream()
-                .map(reserva -> reserva.getFechaHora().toLocalTime().truncatedTo(ChronoUnit.HOURS))
-                .collect(Collectors.groupingBy(LocalTime::toString, Collectors.counting()));
+        Map<String, Long> horariosPico = new HashMap<>();
+        for (EstadisticaReservaRepositorio.ConteoPorHora conteo : porHora) {
+            horariosPico.put(LocalTime.of(conteo.getHora(), 0).toString(), conteo.getCantidad());
+        }
 
         return new EstadisticasResponse(
                 ingresosTotalesConfirmados,
@@ -454,42 +515,114 @@ public class ReservaServicio {
         );
     }
     @Transactional(readOnly = true)
-    public List<Reserva> listarReservasDelPropietario(String username) {
-        log.info("Buscando complejos y reservas para propietario: {}", username);
-        User propietario = usuarioRepositorio.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("Propietario no encontrado: " + username));
+    public PaginaCursor<Reserva> listarReservasDelPropietario(String username, FiltroReservas filtro) {
+        log.info("Buscando complejos y reservas para propietario: {} ({})", username, filtro);
+        EstadoUsuariosCache.EstadoUsuario propietario = estadoUsuarios.obtener(username);
+        if (!propietario.existe()) {
+            throw new UsernameNotFoundException("Propietario no encontrado: " + username);
+        }
+        return listarDeComplejosDelPropietario(username, propietario.complejoIds(), filtro);
+    }
 
-        List<Complejo> complejosDelPropietario = complejoRepositorio.findByPropietario(propietario);
+    private PaginaCursor<Reserva> listarDeComplejosDelPropietario(String username, List<Long> idsComplejos, FiltroReservas filtro) {
+        if (idsComplejos.isEmpty()) {
+            log.warn("El propietario {} no tiene complejos asignados, devolviendo lista de reservas vacía.", username);
+            return new PaginaCursor<>(Collections.emptyList(), null);
+        }
+        return paginar(filtro, (desde, hasta, todos, estados, cursorFecha, cursorId, pageable) ->
+                reservaRepositorio.findPaginaPorComplejos(idsComplejos, desde, hasta, todos, estados, cursorFecha, cursorId, pageable));
+    }
+
+    // Los complejos propios salen del cache de usuarios; la base solo se consulta para distinguir un complejo inexistente.
+    private void verificarDuenio(EstadoUsuariosCache.EstadoUsuario usuario, Long complejoId) {
+        if (usuario.esDuenioDe(complejoId)) {
+            return;
+        }
+        if (!complejoRepositorio.existsById(complejoId)) {
+            throw new IllegalArgumentException("Complejo no encontrado con ID: " + complejoId);
+        }
+        throw new SecurityException("Acceso denegado: Este complejo no te pertenece.");
+    }
+
+    // Firma común de las consultas paginadas de ReservaRepositorio.
+    private interface ConsultaPagina {
+        List<Reserva> buscar(LocalDateTime desde, LocalDateTime hasta, boolean todosLosEstados, List<String> estados,
+                             LocalDateTime cursorFecha, Long cursorId, Pageable pageable);
+    }
 
-        if (complejosDelPropietario.isEmpty()) {
-            log.warn("El propietario {} no tiene complejos asignados.", username);
-            return Collections.emptyList();
+    private PaginaCursor<Reserva> paginar(FiltroReservas filtro, ConsultaPagina consulta) {
+        int tamanio = filtro.getTamanio();
+        if (tamanio <= 0 || tamanio > MAX_TAMANIO_PAGINA) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + MAX_TAMANIO_PAGINA + ".");
+        }
+        if (filtro.getDesde() != null && filtro.getHasta() != null && filtro.getHasta().isBefore(filtro.getDesde())) {
+            throw new IllegalArgumentException("La fecha 'hasta' no puede ser anterior a 'desde'.");
         }
+        // Sin rango explícito se usan límites amplios para que la consulta tenga siempre la misma forma.
+        LocalDateTime desde = filtro.getDesde() != null ? filtro.getDesde().atStartOfDay() : FECHA_MINIMA_CONSULTA;
+        LocalDateTime hasta = filtro.getHasta() != null ? filtro.getHasta().plusDays(1).atStartOfDay() : FECHA_MAXIMA_CONSULTA;
 
-        List<Long> idsComplejos = complejosDelPropietario.stream()
-                .map(Complejo::getId)
+        List<String> estados = filtro.getEstados() == null ? List.of() : filtro.getEstados().stream()
+                .filter(e -> e != null && !e.isBlank())
+                .map(e -> e.trim().toLowerCase())
                 .collect(Collectors.toList());
+        boolean todosLosEstados = estados.isEmpty();
+        // IN () no es SQL válido; con el filtro desactivado la lista no se evalúa pero tiene que tener un elemento.
+        List<String> estadosParametro = todosLosEstados ? List.of("") : estados;
+
+        LocalDateTime cursorFecha = FECHA_MAXIMA_CONSULTA;
+        Long cursorId = Long.MAX_VALUE;
+        if (filtro.getCursor() != null && !filtro.getCursor().isBlank()) {
+            String[] partes = decodificarCursor(filtro.getCursor());
+            cursorFecha = LocalDateTime.parse(partes[0]);
+            cursorId = Long.parseLong(partes[1]);
+        }
+
+        // Se pide un elemento de más para saber si existe una página siguiente sin contar el total.
+        List<Reserva> resultado = consulta.buscar(desde, hasta, todosLosEstados, estadosParametro, cursorFecha, cursorId,
+                PageRequest.of(0, tamanio + 1));
+        if (resultado.size() <= tamanio) {
+            return new PaginaCursor<>(resultado, null);
+        }
+        List<Reserva> pagina = new ArrayList<>(resultado.subList(0, tamanio));
+        Reserva ultima = pagina.get(pagina.size() - 1);
+        return new PaginaCursor<>(pagina, codificarCursor(ultima.getFechaHora(), ultima.getId()));
+    }
 
-        return reservaRepositorio.findByComplejoIdIn(idsComplejos);
+    private static String codificarCursor(LocalDateTime fechaHora, Long id) {
+        String valor = fechaHora + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
     }
+
+    private static String[] decodificarCursor(String cursor) {
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = valor.split("\\|");
+            if (partes.length != 2) {
+                throw new IllegalArgumentException("Cursor inválido.");
+            }
+            LocalDateTime.parse(partes[0]);
+            Long.parseLong(partes[1]);
+            return partes;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido.");
+        }
+    }
+
     @Transactional
     public Reserva cancelarReserva(Long id, String canceladorUsername) {
         log.info("Intentando cancelar reserva con ID: {} por usuario: {}", id, canceladorUsername);
         Reserva reserva = reservaRepositorio.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Reserva no encontrada con ID: " + id));
 
-        User cancelador = usuarioRepositorio.findByUsername(canceladorUsername)
-                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + canceladorUsername));
+        EstadoUsuariosCache.EstadoUsuario cancelador = estadoUsuarios.obtenerExistente(canceladorUsername);
 
-        boolean tienePermiso = cancelador.getRoles().stream().anyMatch(role -> role.getName().equals(ERole.ROLE_ADMIN));
+        boolean tienePermiso = cancelador.esAdmin();
         if (!tienePermiso) {
-            tienePermiso = reserva.getUsuario() != null && reserva.getUsuario().getId().equals(cancelador.getId());
+            tienePermiso = reserva.getUsuario() != null && reserva.getUsuario().getId().equals(cancelador.id());
         }
         if (!tienePermiso) {
-            Complejo complejo = reserva.getComplejo();
-            if (complejo != null && complejo.getPropietario() != null) {
-                tienePermiso = complejo.getPropietario().getId().equals(cancelador.getId());
-            }
+            tienePermiso = reserva.getComplejo() != null && cancelador.esDuenioDe(reserva.getComplejo().getId());
         }
 
         if (!tienePermiso) {
@@ -509,11 +642,190 @@ public class ReservaServicio {
             log.warn("La reserva ID {} está pagada. Se cancela, pero no se procesa un reembolso automático.", id);
         }
 
+        EstadisticasRollupServicio.Huella anterior = EstadisticasRollupServicio.Huella.de(reserva);
         reserva.setEstado("cancelada");
-        Reserva reservaCancelada = reservaRepositorio.save(reserva);
+        Reserva reservaCancelada = reservaRepositorio.saveAndFlush(reserva);
+        ocupacionIndice.registrar(reservaCancelada);
+        rollupEstadisticas.registrarCambio(anterior, reservaCancelada);
 
         log.info("Reserva con ID {} cancelada exitosamente por {}.", id, canceladorUsername);
 
         return reservaCancelada;
     }
-}
\ No newline at end of file
+
+    // Aplica el estado informado por Mercado Pago para un pago. La reserva se resuelve por búsquedas indexadas que traen
+    // solo las columnas de la transición, y se actualiza con un UPDATE condicional sin cargar la entidad; el estado final
+    // se calcula con la misma regla que @PreUpdate de Reserva. Devuelve false si el pago no cambia nada.
+    @Transactional
+    public boolean aplicarPagoMercadoPago(String externalReference, String paymentId, String status) {
+        ReservaRepositorio.EstadoPago actual = buscarEstadoPago(externalReference, paymentId)
+                .orElseThrow(() -> new IllegalStateException("Reserva no encontrada para el pago " + paymentId
+                        + " (external_reference: " + externalReference + ")."));
+
+        TransicionPago transicion = calcularTransicion(actual, paymentId, status);
+        if (transicion == null) {
+            log.debug("El pago {} ('{}') no cambia la reserva {}.", paymentId, status, actual.getId());
+            return false;
+        }
+        if (reservaRepositorio.actualizarPago(actual.getId(), actual.getEstado(), transicion.estado(), transicion.pagada(),
+                transicion.metodoPago(), transicion.paymentId(), transicion.pagoADevolver()) == 0) {
+            throw new IllegalStateException("La reserva " + actual.getId() + " cambió mientras se aplicaba el pago " + paymentId + ".");
+        }
+
+        // Solo un cambio de estado mueve la ocupación y el rollup (por ejemplo, no el pago registrado en una reserva cancelada).
+        if (!transicion.estado().equals(actual.getEstado())) {
+            ocupacionIndice.registrar(actual.getId(), actual.getComplejoId(), actual.getTipoCancha(), actual.getFechaHora(),
+                    actual.getNombreCancha(), transicion.estado());
+            rollupEstadisticas.registrarCambio(huellaDe(actual, actual.getEstado()), huellaDe(actual, transicion.estado()));
+        }
+        log.info("Reserva {} actualizada por el pago {} de Mercado Pago ('{}'). Nuevo estado: {}", actual.getId(), paymentId, status, transicion.estado());
+        return true;
+    }
+
+    // Pago encontrado por la conciliación para una reserva que seguía pendiente de Mercado Pago.
+    public record PagoConciliado(ReservaRepositorio.EstadoPago actual, String paymentId, String status) {
+    }
+
+    // Aplica en bloque los pagos de una página de la conciliación: un único batch de UPDATE condicionales (misma
+    // condición que actualizarPago) y un upsert del rollup por fila afectada. Una reserva que cambió desde que se leyó
+    // no se toca; la toma la próxima pasada o su webhook. Devuelve cuántas reservas se actualizaron.
+    @Transactional
+    public int aplicarPagosConciliados(List<PagoConciliado> pagos) {
+        List<PagoConciliado> aplicables = new ArrayList<>();
+        List<TransicionPago> transiciones = new ArrayList<>();
+        for (PagoConciliado pago : pagos) {
+            TransicionPago transicion = calcularTransicion(pago.actual(), pago.paymentId(), pago.status());
+            if (transicion != null) {
+                aplicables.add(pago);
+                transiciones.add(transicion);
+            }
+        }
+        if (aplicables.isEmpty()) {
+            return 0;
+        }
+
+        List<Object[]> parametros = new ArrayList<>(aplicables.size());
+        for (int i = 0; i < aplicables.size(); i++) {
+            TransicionPago transicion = transiciones.get(i);
+            ReservaRepositorio.EstadoPago actual = aplicables.get(i).actual();
+            parametros.add(new Object[]{transicion.estado(), transicion.pagada(), transicion.metodoPago(), transicion.paymentId(),
+                    transicion.pagoADevolver(), actual.getId(), actual.getEstado()});
+        }
+        int[] filas = jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_PAGO, parametros);
+
+        List<EstadisticasRollupServicio.Huella> anteriores = new ArrayList<>();
+        List<EstadisticasRollupServicio.Huella> nuevas = new ArrayList<>();
+        int actualizadas = 0;
+        for (int i = 0; i < aplicables.size(); i++) {
+            PagoConciliado pago = aplicables.get(i);
+            ReservaRepositorio.EstadoPago actual = pago.actual();
+            if (filas[i] == 0) {
+                log.info("La reserva {} cambió durante la conciliación; el pago {} se aplicará en la próxima pasada.", actual.getId(), pago.paymentId());
+                continue;
+            }
+            String estado = transiciones.get(i).estado();
+            if (!estado.equals(actual.getEstado())) {
+                ocupacionIndice.registrar(actual.getId(), actual.getComplejoId(), actual.getTipoCancha(), actual.getFechaHora(),
+                        actual.getNombreCancha(), estado);
+                anteriores.add(huellaDe(actual, actual.getEstado()));
+                nuevas.add(huellaDe(actual, estado));
+            }
+            actualizadas++;
+            log.info("Reserva {} conciliada con el pago {} de Mercado Pago ('{}'). Nuevo estado: {}", actual.getId(), pago.paymentId(), pago.status(), estado);
+        }
+        rollupEstadisticas.registrarCambios(anteriores, nuevas);
+        return actualizadas;
+    }
+
+    @Transactional
+    public void registrarPreferenciaMercadoPago(Long reservaId, String preferenceId) {
+        if (preferenceId == null || reservaRepositorio.asignarPreferenceId(reservaId, preferenceId) == 0) {
+            log.warn("No se pudo registrar la preferencia {} de Mercado Pago en la reserva {}.", preferenceId, reservaId);
+        }
+    }
+
+    // external_reference es el ID de la reserva (ver MercadoPagoService); preference_id y el ID de pago ya vinculado
+    // cubren referencias de otro formato.
+    private Optional<ReservaRepositorio.EstadoPago> buscarEstadoPago(String externalReference, String paymentId) {
+        if (externalReference != null && externalReference.matches("\\d{1,18}")) {
+            Optional<ReservaRepositorio.EstadoPago> porId = reservaRepositorio.findEstadoPagoPorId(Long.valueOf(externalReference));
+            if (porId.isPresent()) {
+                return porId;
+            }
+        }
+        if (externalReference != null) {
+            List<ReservaRepositorio.EstadoPago> porPreferencia = reservaRepositorio.findEstadoPagoPorPreferenceId(externalReference);
+            if (!porPreferencia.isEmpty()) {
+                return Optional.of(porPreferencia.get(0));
+            }
+        }
+        return reservaRepositorio.findEstadoPagoPorPaymentId(paymentId).stream().findFirst();
+    }
+
+    private record TransicionPago(String estado, Boolean pagada, String metodoPago, String paymentId, Boolean pagoADevolver) {
+    }
+
+    // Estado al que lleva el pago a la reserva, con la misma regla que @PreUpdate de Reserva; null si no cambia nada.
+    // Una reserva cancelada no se reactiva: su turno pudo haberse liberado y tomado por otra reserva.
+    private static TransicionPago calcularTransicion(ReservaRepositorio.EstadoPago actual, String paymentId, String status) {
+        Boolean pagada = actual.getPagada();
+        String estado = actual.getEstado();
+        String metodoPago = actual.getMetodoPago();
+        String mercadoPagoPaymentId = actual.getMercadoPagoPaymentId();
+        Boolean pagoADevolver = actual.getPagoADevolver();
+        if ("cancelada".equalsIgnoreCase(actual.getEstado())) {
+            // Por ejemplo, un pago que llegó después de vencida la retención: con cualquier estado de pago la reserva
+            // sigue cancelada y solo se registra el pago; si se aprobó, queda para devolverlo.
+            pagada = false;
+            metodoPago = "MercadoPago";
+            mercadoPagoPaymentId = paymentId;
+            if ("approved".equals(status)) {
+                pagoADevolver = true;
+                log.warn("Pago aprobado {} para la reserva cancelada {}. La reserva no se reactiva; el pago queda para devolver.",
+                        paymentId, actual.getId());
+            }
+        } else {
+            switch (status) {
+                case "approved":
+                    pagada = true;
+                    estado = "pagada";
+                    metodoPago = "MercadoPago"; // Mantener el casing consistente
+                    mercadoPagoPaymentId = paymentId;
+                    break;
+                case "pending":
+                case "in_process":
+                    // El ID queda vinculado para que el vencimiento no cancele una reserva con un pago en curso
+                    // (por ejemplo, un ticket que se paga en efectivo horas después).
+                    pagada = false;
+                    estado = "pendiente_pago_mp";
+                    mercadoPagoPaymentId = paymentId;
+                    break;
+                case "rejected":
+                    pagada = false;
+                    estado = "rechazada_pago_mp";
+                    break;
+                case "in_mediation":
+                    pagada = false;
+                    estado = "en_mediacion_mp";
+                    break;
+                default:
+                    log.warn("Estado de pago desconocido recibido de Mercado Pago: {}", status);
+                    estado = "desconocido_mp";
+            }
+            estado = Reserva.estadoEfectivo(estado, pagada, metodoPago);
+        }
+
+        if (estado.equals(actual.getEstado()) && Objects.equals(pagada, actual.getPagada())
+                && Objects.equals(metodoPago, actual.getMetodoPago())
+                && Objects.equals(mercadoPagoPaymentId, actual.getMercadoPagoPaymentId())
+                && Objects.equals(pagoADevolver, actual.getPagoADevolver())) {
+            return null;
+        }
+        return new TransicionPago(estado, pagada, metodoPago, mercadoPagoPaymentId, pagoADevolver);
+    }
+
+    private static EstadisticasRollupServicio.Huella huellaDe(ReservaRepositorio.EstadoPago reserva, String estado) {
+        return EstadisticasRollupServicio.Huella.de(reserva.getComplejoId(), reserva.getFechaHora(), reserva.getTipoCancha(),
+                estado, reserva.getPrecio());
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.reservafutbol.Servicio;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public final class TransaccionUtil {
+
+    private TransaccionUtil() {
+    }
+
+    // Ejecuta la acción cuando la transacción actual confirma; si no hay transacción activa, la ejecuta en el momento.
+    // Se usa para mantener estructuras en memoria alineadas con lo que realmente quedó guardado en la base.
+    public static void despuesDelCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
@@ -42,6 +42,12 @@ public class UsuarioServicio implements UserDetailsService {
     @Autowired(required = false)
     private S3StorageService s3StorageService;
 
+    @Autowired
+    private EstadoUsuariosCache estadoUsuarios;
+
+    @Autowired
+    private RefreshTokenServicio refreshTokenServicio;
+
     @Override
     @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
@@ -89,6 +95,7 @@ public class UsuarioServicio implements UserDetailsService {
         user.setRoles(roles);
 
         User savedUser = usuarioRepositorio.save(user);
+        estadoUsuarios.invalidar(savedUser.getUsername());
         log.info("Usuario '{}' registrado y guardado (PENDIENTE DE ACTIVACIÓN ADMIN).", savedUser.getUsername());
 
         return savedUser;
@@ -109,6 +116,7 @@ public class UsuarioServicio implements UserDetailsService {
         user.setRoles(roles);
 
         User savedUser = usuarioRepositorio.save(user);
+        estadoUsuarios.invalidar(savedUser.getUsername());
         log.info("Usuario '{}' de OAuth2 registrado y activado.", savedUser.getUsername());
         return savedUser;
     }
@@ -126,6 +134,7 @@ public class UsuarioServicio implements UserDetailsService {
             usuario.setEnabled(true);
             usuario.setVerificationToken(null);
             usuarioRepositorio.save(usuario);
+            estadoUsuarios.invalidar(usuario.getUsername());
             log.info("Usuario {} (ID {}) activado exitosamente por administrador.", usuario.getUsername(), userId);
             return true;
         }
@@ -179,6 +188,7 @@ public class UsuarioServicio implements UserDetailsService {
         user.setResetPasswordToken(null);
         user.setResetPasswordTokenExpiryDate(null);
         usuarioRepositorio.save(user);
+        refreshTokenServicio.revocarTodos(user.getId());
         log.info("Contraseña actualizada exitosamente para usuario {}", user.getUsername());
     }
 
@@ -242,7 +252,9 @@ public class UsuarioServicio implements UserDetailsService {
 
         user.setRoles(rolesToSet);
         log.info("Roles actualizados para usuario {}: {}", user.getUsername(), rolesToSet.stream().map(r -> r.getName().name()).collect(Collectors.joining(", ")));
-        return usuarioRepositorio.save(user);
+        User actualizado = usuarioRepositorio.save(user);
+        estadoUsuarios.invalidar(actualizado.getUsername());
+        return actualizado;
     }
 
     @Transactional(readOnly = true)
@@ -273,7 +285,9 @@ public class UsuarioServicio implements UserDetailsService {
             //         log.error("Error al eliminar foto de perfil de S3 para usuario {}: {}", user.getUsername(), e.getMessage());
             //     }
             // }
+            refreshTokenServicio.eliminarDeUsuario(user.getId());
             usuarioRepositorio.delete(user);
+            estadoUsuarios.invalidar(user.getUsername());
             log.info("Usuario {} (ID {}) eliminado exitosamente.", user.getUsername(), userId);
         } else {
             log.warn("Intento de eliminar usuario con ID {} fallido: No encontrado.", userId);
@@ -0,0 +1,139 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Repositorio.ReservaRepositorio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Cancela las reservas de Mercado Pago que no se pagaron dentro de la retención (checkouts abandonados), para que no
+// ocupen la cancha indefinidamente. Cada lote es un único UPDATE que toma solo las reservas vencidas por el índice
+// (estado, fecha_creacion) y devuelve sus datos, con los que se actualizan el índice de ocupación y el rollup.
+@Service
+public class VencimientoReservasServicio {
+
+    private static final Logger log = LoggerFactory.getLogger(VencimientoReservasServicio.class);
+
+    // SKIP LOCKED: una reserva que se está pagando en este momento queda para la próxima pasada.
+    // Una reserva con un pago pendiente vinculado (ticket o pago en proceso) no vence con la retención normal:
+    // Mercado Pago puede aprobarlo horas después. Solo vence si el pago sigue sin resolverse pasada la retención larga.
+    private static final String VENCER = """
+            UPDATE reservas r SET estado = 'cancelada'
+            FROM (SELECT id FROM reservas
+                  WHERE estado = 'pendiente_pago_mp' AND fecha_creacion < ?
+                    AND (mercado_pago_payment_id IS NULL OR fecha_creacion < ?)
+                  ORDER BY fecha_creacion
+                  LIMIT ?
+                  FOR UPDATE SKIP LOCKED) vencidas
+            WHERE r.id = vencidas.id
+            RETURNING r.id, r.complejo_id, r.tipo_cancha_reservada, r.fecha_hora, r.nombre_cancha_asignada, r.precio
+            """;
+
+    @Autowired
+    private ReservaRepositorio reservaRepositorio;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OcupacionCanchasIndice ocupacionIndice;
+
+    @Autowired
+    private EstadisticasRollupServicio rollupEstadisticas;
+
+    @Value("${reservas.vencimiento.habilitado:true}")
+    private boolean habilitado;
+
+    // Debe coincidir con el vencimiento de la preferencia de Mercado Pago (ver MercadoPagoService).
+    @Value("${reservas.vencimiento.retencion-minutos:30}")
+    private long retencionMinutos;
+
+    // Debe cubrir el vencimiento de los medios de pago diferidos de Mercado Pago (tickets en efectivo).
+    @Value("${reservas.vencimiento.retencion-pago-pendiente-horas:72}")
+    private long retencionPagoPendienteHoras;
+
+    @Value("${reservas.vencimiento.lote:500}")
+    private int tamanioLote;
+
+    private record ReservaVencida(Long id, Long complejoId, String tipoCancha, LocalDateTime fechaHora,
+                                  String nombreCancha, BigDecimal precio) {
+    }
+
+    // Las reservas pendientes de antes de la columna no tienen fecha de creación; se les da una retención completa.
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciarRetencionesSinFecha() {
+        Integer filas = transactionTemplate.execute(status -> reservaRepositorio.iniciarRetencionSinFecha(LocalDateTime.now()));
+        if (filas != null && filas > 0) {
+            log.info("{} reservas pendientes de Mercado Pago sin fecha de creación empiezan su retención ahora.", filas);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${reservas.vencimiento.intervalo-ms:60000}")
+    public void vencerProgramado() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            vencer();
+        } catch (Exception e) {
+            log.error("Error al vencer reservas de Mercado Pago sin pagar: {}", e.getMessage(), e);
+        }
+    }
+
+    // Devuelve cuántas reservas se cancelaron.
+    public int vencer() {
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime limite = ahora.minusMinutes(retencionMinutos);
+        LocalDateTime limitePagoPendiente = ahora.minusHours(retencionPagoPendienteHoras);
+        int total = 0;
+        int vencidas;
+        do {
+            Integer lote = transactionTemplate.execute(status -> vencerLote(limite, limitePagoPendiente));
+            vencidas = lote != null ? lote : 0;
+            total += vencidas;
+        } while (vencidas == tamanioLote);
+        if (total > 0) {
+            log.info("Vencimiento de reservas: {} reservas de Mercado Pago sin pagar canceladas (creadas antes de {}).", total, limite);
+        }
+        return total;
+    }
+
+    private int vencerLote(LocalDateTime limite, LocalDateTime limitePagoPendiente) {
+        List<ReservaVencida> vencidas = jdbcTemplate.query(VENCER, (rs, i) -> new ReservaVencida(
+                rs.getLong("id"),
+                rs.getLong("complejo_id"),
+                rs.getString("tipo_cancha_reservada"),
+                rs.getObject("fecha_hora", LocalDateTime.class),
+                rs.getString("nombre_cancha_asignada"),
+                rs.getBigDecimal("precio")
+        ), limite, limitePagoPendiente, tamanioLote);
+
+        List<EstadisticasRollupServicio.Huella> anteriores = new ArrayList<>(vencidas.size());
+        List<EstadisticasRollupServicio.Huella> nuevas = new ArrayList<>(vencidas.size());
+        for (ReservaVencida reserva : vencidas) {
+            ocupacionIndice.registrar(reserva.id(), reserva.complejoId(), reserva.tipoCancha(), reserva.fechaHora(),
+                    reserva.nombreCancha(), "cancelada");
+            anteriores.add(EstadisticasRollupServicio.Huella.de(reserva.complejoId(), reserva.fechaHora(), reserva.tipoCancha(),
+                    "pendiente_pago_mp", reserva.precio()));
+            nuevas.add(EstadisticasRollupServicio.Huella.de(reserva.complejoId(), reserva.fechaHora(), reserva.tipoCancha(),
+                    "cancelada", reserva.precio()));
+            log.debug("Reserva {} vencida sin pago de Mercado Pago.", reserva.id());
+        }
+        rollupEstadisticas.registrarCambios(anteriores, nuevas);
+        return vencidas.size();
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.reservafutbol.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BusquedaComplejosResponse {
+    private List<ComplejoResumenDTO> resultados; // precioMinimo: el menor precio entre los tipos que cumplen el filtro
+    private int total;
+    private Map<String, Map<String, Integer>> facetas; // Faceta -> valor -> cantidad de complejos
+}
@@ -0,0 +1,20 @@
+package com.example.reservafutbol.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CanchaLibreDTO {
+    private Long complejoId;
+    private String nombre;
+    private String ubicacion;
+    private String portadaUrl;
+    private String tipoCancha;
+    private Double precioPorHora;
+    private Map<String, Integer> horariosLibres; // Hora de inicio ("HH:mm") -> canchas libres
+}
@@ -0,0 +1,17 @@
+package com.example.reservafutbol.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Lo mínimo que necesita la página de listado de complejos.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ComplejoResumenDTO {
+    private Long id;
+    private String nombre;
+    private String ubicacion;
+    private String portadaUrl; // Miniatura
+    private Double precioMinimo;
+}
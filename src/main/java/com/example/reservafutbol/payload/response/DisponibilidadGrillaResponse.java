@@ -0,0 +1,19 @@
+package com.example.reservafutbol.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalTime;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DisponibilidadGrillaResponse {
+    private Long complejoId;
+    private LocalTime horarioApertura;
+    private LocalTime horarioCierre;
+    private Map<String, Integer> canchaCounts;
+    private Map<String, Map<String, Map<String, Integer>>> disponibilidad; // Fecha -> Tipo de cancha -> Hora ("HH:mm") -> Canchas disponibles
+}
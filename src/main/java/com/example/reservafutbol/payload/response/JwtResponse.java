@@ -14,6 +14,7 @@ public class JwtResponse {
     private String username; // Este campo ahora es el email del usuario (login ID)
     private String nombreCompleto; // Nombre completo del usuario
     private String role;
+    private String refreshToken; // Opaco; se canjea en /api/auth/refresh por un nuevo access token
 
     // Constructor adaptado a los nuevos campos de User y RegisterRequest
     public JwtResponse(String token, Long id, String username, String nombreCompleto, String role) {
@@ -23,4 +24,9 @@ public class JwtResponse {
         this.nombreCompleto = nombreCompleto;
         this.role = role;
     }
+
+    public JwtResponse(String token, Long id, String username, String nombreCompleto, String role, String refreshToken) {
+        this(token, id, username, nombreCompleto, role);
+        this.refreshToken = refreshToken;
+    }
 }
\ No newline at end of file
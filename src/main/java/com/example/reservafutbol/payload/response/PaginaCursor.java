@@ -0,0 +1,19 @@
+package com.example.reservafutbol.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaCursor<T> {
+    private List<T> contenido;
+    private String siguienteCursor; // null cuando no hay más resultados
+
+    public boolean hayMas() {
+        return siguienteCursor != null;
+    }
+}
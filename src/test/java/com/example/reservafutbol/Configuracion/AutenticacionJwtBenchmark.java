@@ -0,0 +1,98 @@
+package com.example.reservafutbol.Configuracion;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Costo por request de verificar el JWT en JWTAuthenticationFilter.
+// "anterior": validateJwtToken + getUserNameFromJwtToken, cada uno derivando la clave y armando un parser nuevo.
+// "verificado": JWTUtil.verificar sin cache, con clave y parser precalculados y una sola verificación de firma.
+// "verificadoConCache": JWTUtil.verificar con la cache de tokens verificados (el mismo token en cada request).
+// No es un test de surefire; se corre con:
+//   mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.reservafutbol.Configuracion.AutenticacionJwtBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class AutenticacionJwtBenchmark {
+
+    private static final String SECRETO = "clave-de-benchmark-con-al-menos-treinta-y-dos-bytes-para-hs256";
+
+    private JWTUtil jwtUtil;
+    private JWTUtil jwtUtilConCache;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = nuevoJwtUtil(0);
+        jwtUtilConCache = nuevoJwtUtil(10_000);
+        token = Jwts.builder()
+                .subject("jugador@test.com")
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + 3_600_000))
+                .claim("roles", List.of("ROLE_USER"))
+                .claim("nombreCompleto", "Jugador de Prueba")
+                .signWith(Keys.hmacShaKeyFor(SECRETO.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+
+    @Benchmark
+    public String anterior() {
+        parsearComoAntes(token); // validateJwtToken
+        return parsearComoAntes(token).getSubject(); // getUserNameFromJwtToken
+    }
+
+    @Benchmark
+    public String verificado() {
+        return jwtUtil.verificar(token).username();
+    }
+
+    @Benchmark
+    public String verificadoConCache() {
+        return jwtUtilConCache.verificar(token).username();
+    }
+
+    private static JWTUtil nuevoJwtUtil(long maxTokensVerificados) {
+        JWTUtil util = new JWTUtil();
+        ReflectionTestUtils.setField(util, "jwtSecret", SECRETO);
+        ReflectionTestUtils.setField(util, "jwtExpirationMs", 3_600_000);
+        ReflectionTestUtils.setField(util, "maxTokensVerificados", maxTokensVerificados);
+        util.init();
+        return util;
+    }
+
+    private static Claims parsearComoAntes(String token) {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRETO.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AutenticacionJwtBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Repositorio.ReservaRepositorio;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConciliacionPagosServicioTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Respuesta de la búsqueda de pagos por external_reference; sin entrada, la reserva no tiene pagos.
+    private final Map<String, String> pagosPorReferencia = new ConcurrentHashMap<>();
+    private final List<String> referenciasConsultadas = new CopyOnWriteArrayList<>();
+    private final List<Long> consultasEnMs = new CopyOnWriteArrayList<>();
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final AtomicInteger maxEnCurso = new AtomicInteger();
+
+    private final List<ReservaRepositorio.EstadoPago> pendientes = new ArrayList<>();
+    private final List<Long> cursores = new CopyOnWriteArrayList<>();
+
+    private HttpServer servidor;
+    private ExecutorService hilosServidor;
+    private PagoServicio pagoServicio;
+    private JdbcTemplate jdbcTemplate;
+    private EstadisticasRollupServicio rollupEstadisticas;
+    private ConciliacionPagosServicio conciliacion;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // API de Mercado Pago simulada: /v1/payments/search responde los pagos cargados para cada external_reference.
+        servidor = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        hilosServidor = Executors.newCachedThreadPool();
+        servidor.setExecutor(hilosServidor);
+        servidor.createContext("/v1/payments/search", this::responderBusqueda);
+        servidor.start();
+
+        pagoServicio = PagoServicioTest.nuevoPagoServicio("http://localhost:" + servidor.getAddress().getPort() + "/v1/", 16, meterRegistry);
+
+        // Página por keyset sobre las reservas pendientes cargadas en el test.
+        ReservaRepositorio reservaRepositorio = mock(ReservaRepositorio.class);
+        when(reservaRepositorio.findPendientesPagoMercadoPago(any(LocalDateTime.class), anyLong(), any(Pageable.class)))
+                .thenAnswer(inv -> {
+                    long despuesDeId = inv.getArgument(1);
+                    Pageable pagina = inv.getArgument(2);
+                    cursores.add(despuesDeId);
+                    return pendientes.stream()
+                            .filter(r -> r.getId() > despuesDeId)
+                            .limit(pagina.getPageSize())
+                            .toList();
+                });
+
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(inv -> {
+            List<Object[]> filas = inv.getArgument(1);
+            int[] resultado = new int[filas.size()];
+            Arrays.fill(resultado, 1);
+            return resultado;
+        });
+        rollupEstadisticas = mock(EstadisticasRollupServicio.class);
+
+        ReservaServicio reservaServicio = new ReservaServicio();
+        ReflectionTestUtils.setField(reservaServicio, "reservaRepositorio", reservaRepositorio);
+        ReflectionTestUtils.setField(reservaServicio, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(reservaServicio, "ocupacionIndice", mock(OcupacionCanchasIndice.class));
+        ReflectionTestUtils.setField(reservaServicio, "rollupEstadisticas", rollupEstadisticas);
+
+        conciliacion = new ConciliacionPagosServicio();
+        ReflectionTestUtils.setField(conciliacion, "reservaRepositorio", reservaRepositorio);
+        ReflectionTestUtils.setField(conciliacion, "reservaServicio", reservaServicio);
+        ReflectionTestUtils.setField(conciliacion, "pagoServicio", pagoServicio);
+        ReflectionTestUtils.setField(conciliacion, "habilitada", true);
+        ReflectionTestUtils.setField(conciliacion, "tamanioLote", 100);
+        ReflectionTestUtils.setField(conciliacion, "concurrencia", 2);
+        ReflectionTestUtils.setField(conciliacion, "consultasPorSegundo", 0.0);
+        ReflectionTestUtils.setField(conciliacion, "maxReservasPorPasada", 1000);
+        ReflectionTestUtils.setField(conciliacion, "diasAtras", 7L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        conciliacion.shutdown();
+        pagoServicio.shutdown();
+        servidor.stop(0);
+        hilosServidor.shutdownNow();
+    }
+
+    @Test
+    void aplicaLosPagosDeUnaPaginaEnUnSoloBatch() {
+        for (long id = 1; id <= 5; id++) {
+            pendientes.add(reservaPendiente(id));
+        }
+        pagosPorReferencia.put("1", resultados(pago("101", "approved")));
+        // Un reintento rechazado más reciente no tapa el pago aprobado anterior.
+        pagosPorReferencia.put("2", resultados(pago("203", "rejected"), pago("202", "approved"), pago("201", "rejected")));
+        pagosPorReferencia.put("4", resultados(pago("401", "pending")));
+        pagosPorReferencia.put("5", resultados(pago("502", "rejected"), pago("501", "pending")));
+        conciliacion.init();
+
+        assertEquals(4, conciliacion.conciliar());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> filas = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), filas.capture());
+        List<Object[]> actualizadas = filas.getValue();
+        assertEquals(4, actualizadas.size());
+        assertArrayEquals(new Object[]{"pagada", true, "MercadoPago", "101", null, 1L, "pendiente_pago_mp"}, actualizadas.get(0));
+        assertArrayEquals(new Object[]{"pagada", true, "MercadoPago", "202", null, 2L, "pendiente_pago_mp"}, actualizadas.get(1));
+        // El pago pendiente queda vinculado para que el vencimiento no cancele la reserva.
+        assertArrayEquals(new Object[]{"pendiente_pago_mp", false, "mercadopago", "401", null, 4L, "pendiente_pago_mp"}, actualizadas.get(2));
+        assertArrayEquals(new Object[]{"rechazada_pago_mp", false, "mercadopago", null, null, 5L, "pendiente_pago_mp"}, actualizadas.get(3));
+        verify(rollupEstadisticas, times(1)).registrarCambios(anyList(), anyList());
+        assertEquals(5, referenciasConsultadas.size());
+    }
+
+    @Test
+    void recorreLasReservasPorPaginasSinRepetir() {
+        for (long id = 1; id <= 5; id++) {
+            pendientes.add(reservaPendiente(id));
+        }
+        ReflectionTestUtils.setField(conciliacion, "tamanioLote", 2);
+        conciliacion.init();
+
+        assertEquals(0, conciliacion.conciliar());
+
+        assertEquals(List.of(0L, 2L, 4L), cursores);
+        assertEquals(5, referenciasConsultadas.size());
+        assertEquals(5, referenciasConsultadas.stream().distinct().count());
+        // Sin pagos en MP no hay nada que actualizar.
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void respetaLaConcurrenciaYElRitmoConfigurados() {
+        for (long id = 1; id <= 12; id++) {
+            pendientes.add(reservaPendiente(id));
+            pagosPorReferencia.put(String.valueOf(id), resultados(pago(id + "01", "pending")));
+        }
+        ReflectionTestUtils.setField(conciliacion, "concurrencia", 3);
+        ReflectionTestUtils.setField(conciliacion, "consultasPorSegundo", 20.0);
+        conciliacion.init();
+
+        conciliacion.conciliar();
+
+        assertEquals(12, consultasEnMs.size());
+        assertTrue(maxEnCurso.get() <= 3, "Consultas simultáneas a MP: " + maxEnCurso.get());
+        // 12 consultas a 20 por segundo: entre la primera y la última pasan al menos 11 intervalos de 50 ms.
+        List<Long> ordenadas = consultasEnMs.stream().sorted().toList();
+        long duracion = ordenadas.get(ordenadas.size() - 1) - ordenadas.get(0);
+        assertTrue(duracion >= 500, "Las 12 consultas llegaron en " + duracion + " ms");
+    }
+
+    @Test
+    void unErrorDeMercadoPagoDejaLaReservaParaLaProximaPasada() {
+        pendientes.add(reservaPendiente(1));
+        pendientes.add(reservaPendiente(2));
+        pagosPorReferencia.put("1", "error");
+        pagosPorReferencia.put("2", resultados(pago("201", "approved")));
+        conciliacion.init();
+
+        assertEquals(1, conciliacion.conciliar());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> filas = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), filas.capture());
+        assertEquals(1, filas.getValue().size());
+        assertEquals(2L, filas.getValue().get(0)[5]);
+        verify(rollupEstadisticas).registrarCambios(eq(List.of(huella("pendiente_pago_mp"))), eq(List.of(huella("pagada"))));
+    }
+
+    private void responderBusqueda(HttpExchange exchange) throws IOException {
+        consultasEnMs.add(System.nanoTime() / 1_000_000);
+        int actuales = enCurso.incrementAndGet();
+        maxEnCurso.accumulateAndGet(actuales, Math::max);
+        try {
+            Thread.sleep(20);
+            String referencia = null;
+            for (String parametro : exchange.getRequestURI().getRawQuery().split("&")) {
+                if (parametro.startsWith("external_reference=")) {
+                    referencia = URLDecoder.decode(parametro.substring("external_reference=".length()), StandardCharsets.UTF_8);
+                }
+            }
+            referenciasConsultadas.add(referencia);
+            String respuesta = pagosPorReferencia.getOrDefault(referencia, resultados());
+            int codigo = 200;
+            if ("error".equals(respuesta)) {
+                codigo = 500;
+                respuesta = "{\"message\":\"internal_error\"}";
+            }
+            byte[] cuerpo = respuesta.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(codigo, cuerpo.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(cuerpo);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            enCurso.decrementAndGet();
+        }
+    }
+
+    private static String pago(String id, String status) {
+        return "{\"id\":" + id + ",\"status\":\"" + status + "\"}";
+    }
+
+    private static String resultados(String... pagos) {
+        return "{\"paging\":{\"total\":" + pagos.length + "},\"results\":[" + String.join(",", pagos) + "]}";
+    }
+
+    private static final LocalDateTime TURNO = LocalDateTime.now().plusDays(1).withHour(20).withMinute(0).withSecond(0).withNano(0);
+
+    private static EstadisticasRollupServicio.Huella huella(String estado) {
+        return EstadisticasRollupServicio.Huella.de(10L, TURNO, "Futbol 5", estado, new BigDecimal("20000"));
+    }
+
+    private static ReservaRepositorio.EstadoPago reservaPendiente(long id) {
+        return new ReservaPendiente(id, "pendiente_pago_mp", false, "mercadopago", null, 10L, "Futbol 5",
+                "Futbol 5 - Cancha 1", TURNO, new BigDecimal("20000"), null);
+    }
+
+    private record ReservaPendiente(Long getId, String getEstado, Boolean getPagada, String getMetodoPago,
+                                    String getMercadoPagoPaymentId, Long getComplejoId, String getTipoCancha,
+                                    String getNombreCancha, LocalDateTime getFechaHora, BigDecimal getPrecio,
+                                    Boolean getPagoADevolver)
+            implements ReservaRepositorio.EstadoPago {
+    }
+}
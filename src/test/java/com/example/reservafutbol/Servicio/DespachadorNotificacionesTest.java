@@ -0,0 +1,296 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Modelo.Complejo;
+import com.example.reservafutbol.Modelo.NotificacionOutbox;
+import com.example.reservafutbol.Modelo.Reserva;
+import com.example.reservafutbol.Repositorio.NotificacionOutboxRepositorio;
+import com.example.reservafutbol.Repositorio.ReservaRepositorio;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DespachadorNotificacionesTest {
+
+    private final Map<Long, NotificacionOutbox> outbox = new ConcurrentHashMap<>();
+    private final AtomicInteger rechazosPendientes = new AtomicInteger();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ServidorSmtpLocal smtp;
+    private ColaEnvioCorreos colaCorreos;
+    private DespachadorNotificaciones despachador;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtp = new ServidorSmtpLocal(rechazosPendientes);
+        smtp.start();
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtp.getPuerto());
+        colaCorreos = new ColaEnvioCorreos();
+        ReflectionTestUtils.setField(colaCorreos, "mailSender", mailSender);
+        ReflectionTestUtils.setField(colaCorreos, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(colaCorreos, "capacidad", 100);
+        ReflectionTestUtils.setField(colaCorreos, "cantidadWorkers", 1);
+        ReflectionTestUtils.setField(colaCorreos, "tamanioLote", 10);
+        ReflectionTestUtils.setField(colaCorreos, "inactividadMs", 5_000L);
+        colaCorreos.init();
+
+        EmailService emailService = new EmailService("reservas@test.com");
+        ReflectionTestUtils.setField(emailService, "mailSender", mailSender);
+        ReflectionTestUtils.setField(emailService, "colaCorreos", colaCorreos);
+        ReflectionTestUtils.setField(emailService, "esperaMaximaMs", 10_000L);
+
+        Complejo complejo = new Complejo("Complejo Test", "Ubicacion", "123", LocalTime.of(8, 0), LocalTime.of(23, 0));
+        complejo.setId(1L);
+        Reserva reserva = new Reserva();
+        reserva.setId(10L);
+        reserva.setComplejo(complejo);
+        reserva.setTipoCanchaReservada("Futbol 5");
+        reserva.setFechaHora(LocalDateTime.now().plusDays(1));
+        reserva.setPrecio(BigDecimal.valueOf(1000));
+        ReservaRepositorio reservaRepositorio = mock(ReservaRepositorio.class);
+        when(reservaRepositorio.findById(10L)).thenReturn(Optional.of(reserva));
+
+        despachador = new DespachadorNotificaciones();
+        ReflectionTestUtils.setField(despachador, "outboxRepositorio", outboxEnMemoria());
+        ReflectionTestUtils.setField(despachador, "reservaRepositorio", reservaRepositorio);
+        ReflectionTestUtils.setField(despachador, "emailService", emailService);
+        ReflectionTestUtils.setField(despachador, "concurrencia", 2);
+        ReflectionTestUtils.setField(despachador, "tamanioLote", 10);
+        ReflectionTestUtils.setField(despachador, "maxIntentos", 3);
+        ReflectionTestUtils.setField(despachador, "backoffInicialSegundos", 0L);
+        ReflectionTestUtils.setField(despachador, "backoffMaximoSegundos", 0L);
+        ReflectionTestUtils.setField(despachador, "vencimientoEnvioSegundos", 300L);
+        despachador.init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        despachador.shutdown();
+        colaCorreos.shutdown();
+        smtp.close();
+    }
+
+    @Test
+    void enviaLasNotificacionesPendientesPorSmtp() {
+        agregar(1L, "admin@test.com");
+        agregar(2L, "duenio@test.com");
+
+        despachador.procesarPendientes();
+
+        assertEquals(List.of("admin@test.com", "duenio@test.com"),
+                smtp.getDestinatarios().stream().sorted().collect(Collectors.toList()));
+        assertTrue(outbox.values().stream().allMatch(n -> NotificacionOutbox.ESTADO_ENVIADA.equals(n.getEstado())));
+
+        // Los dos correos viajan por la misma conexión SMTP, y una pasada posterior también la reutiliza.
+        agregar(3L, "otro@test.com");
+        despachador.procesarPendientes();
+        assertEquals(1, smtp.getConexiones());
+        assertEquals(1.0, meterRegistry.get("mail.conexiones.creadas").counter().count());
+        assertEquals(1.0, meterRegistry.get("mail.conexiones.abiertas").gauge().value());
+        assertEquals(3.0, meterRegistry.get("mail.enviados").counter().count());
+    }
+
+    @Test
+    void reintentaCuandoElServidorRechazaYDescartaAlAgotarIntentos() {
+        agregar(1L, "admin@test.com");
+        rechazosPendientes.set(1);
+
+        despachador.procesarPendientes();
+        NotificacionOutbox notificacion = outbox.get(1L);
+        assertEquals(NotificacionOutbox.ESTADO_PENDIENTE, notificacion.getEstado());
+        assertEquals(1, notificacion.getIntentos());
+        assertTrue(smtp.getDestinatarios().isEmpty());
+
+        despachador.procesarPendientes();
+        assertEquals(NotificacionOutbox.ESTADO_ENVIADA, notificacion.getEstado());
+        assertEquals(List.of("admin@test.com"), smtp.getDestinatarios());
+
+        agregar(2L, "duenio@test.com");
+        rechazosPendientes.set(10);
+        for (int i = 0; i < 5; i++) {
+            despachador.procesarPendientes();
+        }
+        assertEquals(NotificacionOutbox.ESTADO_FALLIDA, outbox.get(2L).getEstado());
+        assertEquals(3, outbox.get(2L).getIntentos());
+    }
+
+    private void agregar(Long id, String destinatario) {
+        NotificacionOutbox notificacion = new NotificacionOutbox(NotificacionOutbox.TIPO_NUEVA_RESERVA, 10L, destinatario);
+        notificacion.setId(id);
+        notificacion.prePersist();
+        outbox.put(id, notificacion);
+    }
+
+    // Emula las consultas del repositorio sobre un mapa, con las mismas condiciones que los @Query.
+    private NotificacionOutboxRepositorio outboxEnMemoria() {
+        NotificacionOutboxRepositorio repositorio = mock(NotificacionOutboxRepositorio.class);
+        when(repositorio.findIdsListosParaEnviar(any(), any())).thenAnswer(inv -> {
+            LocalDateTime ahora = inv.getArgument(0);
+            return outbox.values().stream()
+                    .filter(n -> !n.getEstado().equals(NotificacionOutbox.ESTADO_ENVIADA) && !n.getEstado().equals(NotificacionOutbox.ESTADO_FALLIDA))
+                    .filter(n -> !n.getProximoIntento().isAfter(ahora))
+                    .map(NotificacionOutbox::getId)
+                    .collect(Collectors.toList());
+        });
+        when(repositorio.reclamar(anyLong(), any(), any())).thenAnswer(inv -> {
+            NotificacionOutbox n = outbox.get((Long) inv.getArgument(0));
+            synchronized (n) {
+                LocalDateTime ahora = inv.getArgument(1);
+                boolean disponible = (n.getEstado().equals(NotificacionOutbox.ESTADO_PENDIENTE) || n.getEstado().equals(NotificacionOutbox.ESTADO_ENVIANDO))
+                        && !n.getProximoIntento().isAfter(ahora);
+                if (!disponible) {
+                    return 0;
+                }
+                n.setEstado(NotificacionOutbox.ESTADO_ENVIANDO);
+                n.setProximoIntento(inv.getArgument(2));
+                return 1;
+            }
+        });
+        when(repositorio.findById(anyLong())).thenAnswer(inv -> Optional.ofNullable(outbox.get((Long) inv.getArgument(0))));
+        when(repositorio.marcarEnviada(anyLong(), any())).thenAnswer(inv -> {
+            NotificacionOutbox n = outbox.get((Long) inv.getArgument(0));
+            n.setEstado(NotificacionOutbox.ESTADO_ENVIADA);
+            n.setIntentos(n.getIntentos() + 1);
+            n.setEnviadoEn(inv.getArgument(1));
+            return 1;
+        });
+        when(repositorio.registrarFallo(anyLong(), anyString(), any(), any())).thenAnswer(inv -> {
+            NotificacionOutbox n = outbox.get((Long) inv.getArgument(0));
+            n.setEstado(inv.getArgument(1));
+            n.setIntentos(n.getIntentos() + 1);
+            n.setProximoIntento(inv.getArgument(2));
+            n.setUltimoError(inv.getArgument(3));
+            return 1;
+        });
+        return repositorio;
+    }
+
+    // Servidor SMTP mínimo en un puerto local: acepta los mensajes y registra los destinatarios y las conexiones,
+    // o responde 451 en MAIL FROM mientras queden rechazos pendientes.
+    private static class ServidorSmtpLocal extends Thread implements AutoCloseable {
+
+        private final ServerSocket serverSocket;
+        private final AtomicInteger rechazosPendientes;
+        private final List<String> destinatarios = new CopyOnWriteArrayList<>();
+        private final AtomicInteger conexiones = new AtomicInteger();
+
+        ServidorSmtpLocal(AtomicInteger rechazosPendientes) throws IOException {
+            this.serverSocket = new ServerSocket(0);
+            this.rechazosPendientes = rechazosPendientes;
+            setDaemon(true);
+        }
+
+        int getPuerto() {
+            return serverSocket.getLocalPort();
+        }
+
+        List<String> getDestinatarios() {
+            return destinatarios;
+        }
+
+        int getConexiones() {
+            return conexiones.get();
+        }
+
+        @Override
+        public void run() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    conexiones.incrementAndGet();
+                    Thread conexion = new Thread(() -> {
+                        try (socket) {
+                            atender(socket);
+                        } catch (IOException e) {
+                            // Conexión cortada por el cliente
+                        }
+                    });
+                    conexion.setDaemon(true);
+                    conexion.start();
+                } catch (IOException e) {
+                    // Socket cerrado al terminar el test
+                }
+            }
+        }
+
+        private void atender(Socket socket) throws IOException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            responder(out, "220 localhost SMTP de prueba");
+            String destinatario = null;
+            String linea;
+            while ((linea = in.readLine()) != null) {
+                String comando = linea.toUpperCase();
+                if (comando.startsWith("EHLO") || comando.startsWith("HELO")) {
+                    responder(out, "250 localhost");
+                } else if (comando.startsWith("RSET")) {
+                    destinatario = null;
+                    responder(out, "250 OK");
+                } else if (comando.startsWith("MAIL FROM")) {
+                    if (rechazosPendientes.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                        responder(out, "451 Servicio no disponible temporalmente");
+                    } else {
+                        responder(out, "250 OK");
+                    }
+                } else if (comando.startsWith("RCPT TO")) {
+                    destinatario = linea.substring(linea.indexOf('<') + 1, linea.indexOf('>'));
+                    responder(out, "250 OK");
+                } else if (comando.equals("DATA")) {
+                    responder(out, "354 Fin con <CRLF>.<CRLF>");
+                    while ((linea = in.readLine()) != null && !linea.equals(".")) {
+                        // Se descarta el cuerpo del mensaje
+                    }
+                    destinatarios.add(destinatario);
+                    responder(out, "250 OK");
+                } else if (comando.startsWith("QUIT")) {
+                    responder(out, "221 Adios");
+                    return;
+                } else {
+                    responder(out, "250 OK");
+                }
+            }
+        }
+
+        private static void responder(PrintWriter out, String respuesta) {
+            out.print(respuesta + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
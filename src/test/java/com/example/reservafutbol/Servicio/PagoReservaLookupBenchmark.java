@@ -0,0 +1,158 @@
+package com.example.reservafutbol.Servicio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Trabajo de base de datos que hace el procesador de notificaciones de Mercado Pago por cada pago, a medida que crece
+// la tabla de reservas. Corre sobre una copia de las columnas de 'reservas' en la tabla reservas_benchmark.
+// "porExternalReference": el camino principal, por ID de reserva (external_reference), más el mismo UPDATE.
+// "porPreferenceId": lectura de la proyección por preference_id + UPDATE condicional (con y sin índice).
+// "porPaymentId": lo mismo por mercado_pago_payment_id, el respaldo cuando la preferencia no encuentra la reserva.
+// Cada operación se hace en una transacción que se descarta, así la tabla no cambia entre iteraciones.
+// Necesita un PostgreSQL propio (se crea y borra la tabla reservas_benchmark); no es un test de surefire. Se corre con:
+//   mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.reservafutbol.Servicio.PagoReservaLookupBenchmark \
+//       -Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5432/benchmark -Dbenchmark.jdbc.user=postgres -Dbenchmark.jdbc.password=postgres
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PagoReservaLookupBenchmark {
+
+    private static final String SELECT_PAGO = "SELECT id, estado, pagada, metodo_pago, mercado_pago_payment_id, complejo_id, " +
+            "tipo_cancha_reservada, nombre_cancha_asignada, fecha_hora, precio FROM reservas_benchmark ";
+
+    @Param({"10000", "100000", "1000000"})
+    private int filas;
+
+    @Param({"true", "false"})
+    private boolean conIndices;
+
+    private Connection conexion;
+    private PreparedStatement porId;
+    private PreparedStatement porPreferenceId;
+    private PreparedStatement porPaymentId;
+    private PreparedStatement actualizar;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        conexion = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/benchmark"),
+                System.getProperty("benchmark.jdbc.user", "postgres"),
+                System.getProperty("benchmark.jdbc.password", "postgres"));
+        try (Statement st = conexion.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS reservas_benchmark");
+            st.execute("CREATE TABLE reservas_benchmark (id bigserial PRIMARY KEY, preference_id varchar(255), " +
+                    "usuario_id bigint NOT NULL, user_email varchar(255) NOT NULL, complejo_id bigint NOT NULL, complejo_nombre varchar(255), " +
+                    "tipo_cancha_reservada varchar(255) NOT NULL, nombre_cancha_asignada varchar(255), cliente varchar(255), dni varchar(255), " +
+                    "telefono varchar(255), fecha_hora timestamp NOT NULL, precio numeric(10,2) NOT NULL, pagada boolean, " +
+                    "estado varchar(255) NOT NULL, metodo_pago varchar(255), fecha_pago timestamp, mercado_pago_payment_id varchar(255))");
+            st.execute("INSERT INTO reservas_benchmark (preference_id, usuario_id, user_email, complejo_id, complejo_nombre, " +
+                    "tipo_cancha_reservada, nombre_cancha_asignada, cliente, dni, telefono, fecha_hora, precio, pagada, estado, metodo_pago, " +
+                    "mercado_pago_payment_id) " +
+                    "SELECT 'pref-' || g, g % 5000, 'jugador' || g || '@test.com', g % 200, 'Complejo ' || (g % 200), 'Futbol 5', " +
+                    "'Futbol 5 - Cancha ' || (g % 4 + 1), 'Cliente ' || g, '30' || g, '11' || g, " +
+                    "TIMESTAMP '2024-01-01 08:00' + (g % 20000) * INTERVAL '1 hour', 20000, g % 2 = 0, " +
+                    "CASE WHEN g % 2 = 0 THEN 'pagada' ELSE 'pendiente_pago_mp' END, 'mercadopago', " +
+                    "CASE WHEN g % 2 = 0 THEN 'pay-' || g END FROM generate_series(1, " + filas + ") g");
+            if (conIndices) {
+                st.execute("CREATE INDEX idx_bench_preference_id ON reservas_benchmark (preference_id)");
+                st.execute("CREATE INDEX idx_bench_mp_payment_id ON reservas_benchmark (mercado_pago_payment_id)");
+            }
+            st.execute("ANALYZE reservas_benchmark");
+        }
+        conexion.setAutoCommit(false);
+        porId = conexion.prepareStatement(SELECT_PAGO + "WHERE id = ?");
+        porPreferenceId = conexion.prepareStatement(SELECT_PAGO + "WHERE preference_id = ?");
+        porPaymentId = conexion.prepareStatement(SELECT_PAGO + "WHERE mercado_pago_payment_id = ?");
+        actualizar = conexion.prepareStatement("UPDATE reservas_benchmark SET estado = ?, pagada = ?, metodo_pago = ?, " +
+                "mercado_pago_payment_id = ? WHERE id = ? AND estado = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        conexion.rollback();
+        conexion.setAutoCommit(true);
+        try (Statement st = conexion.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS reservas_benchmark");
+        }
+        conexion.close();
+    }
+
+    @Benchmark
+    public int porExternalReference() throws SQLException {
+        porId.setLong(1, reservaAlAzar());
+        return aplicarPago(porId);
+    }
+
+    @Benchmark
+    public int porPreferenceId() throws SQLException {
+        porPreferenceId.setString(1, "pref-" + reservaAlAzar());
+        return aplicarPago(porPreferenceId);
+    }
+
+    @Benchmark
+    public int porPaymentId() throws SQLException {
+        // Solo las reservas pares tienen un pago vinculado.
+        porPaymentId.setString(1, "pay-" + ThreadLocalRandom.current().nextLong(1, filas / 2 + 1) * 2);
+        return aplicarPago(porPaymentId);
+    }
+
+    private long reservaAlAzar() {
+        return ThreadLocalRandom.current().nextLong(1, filas + 1);
+    }
+
+    private int aplicarPago(PreparedStatement busqueda) throws SQLException {
+        try {
+            try (ResultSet rs = busqueda.executeQuery()) {
+                if (!rs.next()) {
+                    return 0;
+                }
+                long id = rs.getLong("id");
+                String estadoAnterior = rs.getString("estado");
+                actualizar.setString(1, "pagada");
+                actualizar.setBoolean(2, true);
+                actualizar.setString(3, "MercadoPago");
+                actualizar.setString(4, "pay-" + id);
+                actualizar.setLong(5, id);
+                actualizar.setString(6, estadoAnterior);
+                return actualizar.executeUpdate();
+            }
+        } finally {
+            conexion.rollback();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PagoReservaLookupBenchmark.class.getSimpleName())
+                .jvmArgsAppend("-Dbenchmark.jdbc.url=" + System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/benchmark"),
+                        "-Dbenchmark.jdbc.user=" + System.getProperty("benchmark.jdbc.user", "postgres"),
+                        "-Dbenchmark.jdbc.password=" + System.getProperty("benchmark.jdbc.password", "postgres"))
+                .build()).run();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.reservafutbol.Servicio;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PagoServicioTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Set<Integer> puertosCliente = ConcurrentHashMap.newKeySet();
+    private final List<String> autorizaciones = new CopyOnWriteArrayList<>();
+    private final List<String> rutas = new CopyOnWriteArrayList<>();
+
+    private volatile CountDownLatch liberarRespuestas = new CountDownLatch(0);
+    private volatile CountDownLatch consultasRecibidas = new CountDownLatch(0);
+
+    private HttpServer servidor;
+    private ExecutorService hilosServidor;
+    private PagoServicio pagoServicio;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // API de Mercado Pago simulada: /v1/payments/{id} responde el pago, salvo el id "404" que no existe.
+        servidor = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        hilosServidor = Executors.newCachedThreadPool();
+        servidor.setExecutor(hilosServidor);
+        servidor.createContext("/v1/payments/", this::responderPago);
+        servidor.start();
+
+        pagoServicio = nuevoPagoServicio("http://localhost:" + servidor.getAddress().getPort() + "/v1/", 2, meterRegistry);
+    }
+
+    // PagoServicio apuntando a la API simulada, con los mismos timeouts y pool que usan los tests que lo consultan.
+    static PagoServicio nuevoPagoServicio(String baseUrl, int maxEnCurso, MeterRegistry meterRegistry) {
+        PagoServicio pagoServicio = new PagoServicio();
+        ReflectionTestUtils.setField(pagoServicio, "accessToken", "TEST-TOKEN");
+        ReflectionTestUtils.setField(pagoServicio, "baseUrl", baseUrl);
+        ReflectionTestUtils.setField(pagoServicio, "connectTimeoutMs", 1_000L);
+        ReflectionTestUtils.setField(pagoServicio, "readTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(pagoServicio, "callTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(pagoServicio, "conexionesOciosas", 5);
+        ReflectionTestUtils.setField(pagoServicio, "keepAliveSegundos", 300L);
+        ReflectionTestUtils.setField(pagoServicio, "maxEnCurso", maxEnCurso);
+        ReflectionTestUtils.setField(pagoServicio, "esperaLugarMs", 100L);
+        ReflectionTestUtils.setField(pagoServicio, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(pagoServicio, "meterRegistry", meterRegistry);
+        pagoServicio.init();
+        return pagoServicio;
+    }
+
+    @AfterEach
+    void tearDown() {
+        liberarRespuestas.countDown();
+        pagoServicio.shutdown();
+        servidor.stop(0);
+        hilosServidor.shutdownNow();
+    }
+
+    @Test
+    void reutilizaLaConexionEntreConsultas() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            JsonNode pago = pagoServicio.obtenerPagoPorId(String.valueOf(i));
+            assertEquals("approved", pago.get("status").asText());
+            assertEquals("pref-" + i, pago.get("external_reference").asText());
+        }
+
+        assertEquals(1, puertosCliente.size(), "Cada consulta abrió una conexión nueva");
+        assertTrue(autorizaciones.stream().allMatch("Bearer TEST-TOKEN"::equals));
+        assertTrue(rutas.stream().noneMatch(r -> r.contains("access_token")));
+        assertEquals(5, meterRegistry.get("mercadopago.pagos.consultas").tag("resultado", "ok").timer().count());
+    }
+
+    @Test
+    void registraLosErroresHttp() {
+        assertThrows(RuntimeException.class, () -> pagoServicio.obtenerPagoPorId("404"));
+
+        assertEquals(1, meterRegistry.get("mercadopago.pagos.consultas").tag("resultado", "error_http").timer().count());
+        assertEquals(0.0, meterRegistry.get("mercadopago.pagos.consultas.en_curso").gauge().value());
+    }
+
+    @Test
+    void rechazaConsultasPorEncimaDelLimite() throws Exception {
+        liberarRespuestas = new CountDownLatch(1);
+        consultasRecibidas = new CountDownLatch(2);
+        ExecutorService clientes = Executors.newFixedThreadPool(2);
+        try {
+            Future<JsonNode> primera = clientes.submit(() -> pagoServicio.obtenerPagoPorId("1"));
+            Future<JsonNode> segunda = clientes.submit(() -> pagoServicio.obtenerPagoPorId("2"));
+            assertTrue(consultasRecibidas.await(5, TimeUnit.SECONDS));
+            assertEquals(2.0, meterRegistry.get("mercadopago.pagos.consultas.en_curso").gauge().value());
+
+            // Con las dos consultas permitidas en vuelo, la tercera no llega al servidor.
+            assertThrows(IllegalStateException.class, () -> pagoServicio.obtenerPagoPorId("3"));
+            assertEquals(1.0, meterRegistry.get("mercadopago.pagos.consultas.rechazadas").counter().count());
+
+            liberarRespuestas.countDown();
+            assertEquals("pref-1", primera.get(5, TimeUnit.SECONDS).get("external_reference").asText());
+            assertEquals("pref-2", segunda.get(5, TimeUnit.SECONDS).get("external_reference").asText());
+            assertEquals(2, rutas.size());
+        } finally {
+            clientes.shutdownNow();
+        }
+    }
+
+    private void responderPago(HttpExchange exchange) throws IOException {
+        puertosCliente.add(exchange.getRemoteAddress().getPort());
+        autorizaciones.add(exchange.getRequestHeaders().getFirst("Authorization"));
+        rutas.add(exchange.getRequestURI().toString());
+        consultasRecibidas.countDown();
+        try {
+            liberarRespuestas.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        String id = exchange.getRequestURI().getPath().substring("/v1/payments/".length());
+        int codigo = "404".equals(id) ? 404 : 200;
+        String cuerpo = codigo == 404
+                ? "{\"message\":\"Payment not found\"}"
+                : "{\"id\":" + id + ",\"status\":\"approved\",\"external_reference\":\"pref-" + id + "\"}";
+        byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(codigo, bytes.length);
+        try (OutputStream salida = exchange.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Modelo.Complejo;
+import com.example.reservafutbol.Modelo.EstadoReserva;
+import com.example.reservafutbol.Modelo.Reserva;
+import com.example.reservafutbol.Repositorio.ReservaRepositorio;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReservaServicioConcurrenciaTest {
+
+    private static final int CANCHAS_POR_TIPO = 3;
+    private static final int HILOS = 48;
+    private static final String TIPO = "Futbol 5";
+
+    private final List<Reserva> guardadas = new CopyOnWriteArrayList<>();
+    private final AtomicLong secuencia = new AtomicLong();
+
+    private ReservaServicio reservaServicio;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        ReservaRepositorio reservaRepositorio = mock(ReservaRepositorio.class);
+
+        when(reservaRepositorio.findConflictingReservationsForPool(anyLong(), any(), any(), any())).thenAnswer(inv -> {
+            Long complejoId = inv.getArgument(0);
+            String tipo = inv.getArgument(1);
+            LocalDateTime inicio = inv.getArgument(2);
+            LocalDateTime fin = inv.getArgument(3);
+            List<Reserva> conflictos = guardadas.stream()
+                    .filter(r -> r.getComplejo().getId().equals(complejoId) && r.getTipoCanchaReservada().equals(tipo))
+                    .filter(r -> EstadoReserva.ocupaCancha(r.getEstado()))
+                    .filter(r -> r.getFechaHora().isBefore(fin) && r.getFechaHora().plusMinutes(60).isAfter(inicio))
+                    .collect(Collectors.toList());
+            // Ensancha la ventana entre la lectura de conflictos y el save para que la carrera sea reproducible.
+            Thread.sleep(2);
+            return conflictos;
+        });
+        when(reservaRepositorio.save(any(Reserva.class))).thenAnswer(inv -> {
+            Reserva reserva = inv.getArgument(0);
+            reserva.setId(secuencia.incrementAndGet());
+            guardadas.add(reserva);
+            return reserva;
+        });
+
+        BloqueoSlotsReserva bloqueoSlots = new BloqueoSlotsReserva();
+        ReflectionTestUtils.setField(bloqueoSlots, "reservaRepositorio", reservaRepositorio);
+        ReflectionTestUtils.setField(bloqueoSlots, "cantidadStripes", 64);
+        ReflectionTestUtils.setField(bloqueoSlots, "timeoutMs", 30_000L);
+        ReflectionTestUtils.setField(bloqueoSlots, "usarAdvisoryLock", true);
+        bloqueoSlots.init();
+
+        reservaServicio = new ReservaServicio();
+        ReflectionTestUtils.setField(reservaServicio, "reservaRepositorio", reservaRepositorio);
+        ReflectionTestUtils.setField(reservaServicio, "bloqueoSlots", bloqueoSlots);
+        ReflectionTestUtils.setField(reservaServicio, "ocupacionIndice", mock(OcupacionCanchasIndice.class));
+        ReflectionTestUtils.setField(reservaServicio, "rollupEstadisticas", mock(EstadisticasRollupServicio.class));
+        ReflectionTestUtils.setField(reservaServicio, "notificacionOutbox", mock(NotificacionOutboxServicio.class));
+        ReflectionTestUtils.setField(reservaServicio, "adminEmail", "admin@test.com");
+
+        // Emula el proxy @Transactional: los locks se liberan en afterCompletion, igual que en producción.
+        transactionTemplate = new TransactionTemplate(new TransaccionEnMemoria());
+    }
+
+    @Test
+    void reservasConcurrentesNoAsignanDosVecesLaMismaInstancia() throws Exception {
+        Complejo complejoA = complejo(1L);
+        Complejo complejoB = complejo(2L);
+        LocalDateTime slot = LocalDate.now().plusDays(7).atTime(LocalTime.of(20, 0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Boolean>> resultados = new ArrayList<>();
+        for (int i = 0; i < HILOS; i++) {
+            Complejo complejo = i % 2 == 0 ? complejoA : complejoB;
+            // Mezcla slots alineados y desfasados (20:00 y 20:30) que compiten por las mismas instancias.
+            LocalDateTime fechaHora = i % 3 == 0 ? slot.plusMinutes(30) : slot;
+            int n = i;
+            resultados.add(executor.submit(() -> {
+                largada.await();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> reservaServicio.crearReserva(nuevaReserva(complejo, fechaHora, n)));
+                    return true;
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            }));
+        }
+        largada.countDown();
+
+        int exitosas = 0;
+        for (Future<Boolean> resultado : resultados) {
+            if (resultado.get(60, TimeUnit.SECONDS)) {
+                exitosas++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(exitosas, guardadas.size());
+        for (Complejo complejo : List.of(complejoA, complejoB)) {
+            List<Reserva> delComplejo = guardadas.stream()
+                    .filter(r -> r.getComplejo().getId().equals(complejo.getId()))
+                    .collect(Collectors.toList());
+            assertTrue(delComplejo.size() <= CANCHAS_POR_TIPO,
+                    "Se reservaron " + delComplejo.size() + " canchas con solo " + CANCHAS_POR_TIPO + " disponibles");
+
+            // Dos reservas que se solapan nunca pueden compartir instancia.
+            for (Reserva r1 : delComplejo) {
+                for (Reserva r2 : delComplejo) {
+                    boolean seSolapan = r1.getFechaHora().isBefore(r2.getFechaHora().plusMinutes(60))
+                            && r2.getFechaHora().isBefore(r1.getFechaHora().plusMinutes(60));
+                    if (r1 != r2 && seSolapan) {
+                        assertNotEquals(r1.getNombreCanchaAsignada(), r2.getNombreCanchaAsignada(),
+                                "Doble reserva de " + r1.getNombreCanchaAsignada());
+                    }
+                }
+            }
+        }
+        Set<Long> complejosConReservas = guardadas.stream().map(r -> r.getComplejo().getId()).collect(Collectors.toSet());
+        assertEquals(Set.of(1L, 2L), complejosConReservas);
+    }
+
+    private static Complejo complejo(Long id) {
+        Complejo complejo = new Complejo("Complejo " + id, "Ubicacion", "123", LocalTime.of(8, 0), LocalTime.of(23, 0));
+        complejo.setId(id);
+        Map<String, Integer> counts = new HashMap<>();
+        counts.put(TIPO, CANCHAS_POR_TIPO);
+        complejo.setCanchaCounts(counts);
+        return complejo;
+    }
+
+    private static Reserva nuevaReserva(Complejo complejo, LocalDateTime fechaHora, int n) {
+        Reserva reserva = new Reserva();
+        reserva.setUserEmail("jugador" + n + "@test.com");
+        reserva.setComplejo(complejo);
+        reserva.setTipoCanchaReservada(TIPO);
+        reserva.setFechaHora(fechaHora);
+        reserva.setPrecio(BigDecimal.valueOf(1000));
+        reserva.setMetodoPago("efectivo");
+        return reserva;
+    }
+
+    // Transaction manager sin recursos: solo activa la sincronización de transacciones.
+    private static class TransaccionEnMemoria extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
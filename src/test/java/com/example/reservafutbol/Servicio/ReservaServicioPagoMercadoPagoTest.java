@@ -0,0 +1,118 @@
+package com.example.reservafutbol.Servicio;
+
+import com.example.reservafutbol.Modelo.EstadoReserva;
+import com.example.reservafutbol.Repositorio.ReservaRepositorio;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReservaServicioPagoMercadoPagoTest {
+
+    private static final LocalDateTime TURNO = LocalDateTime.now().plusDays(1).withHour(20).withMinute(0).withSecond(0).withNano(0);
+
+    // Estado de la reserva 7 en la "base": actualizarPago lo reemplaza si el UPDATE condicional aplica.
+    private final AtomicReference<ReservaRepositorio.EstadoPago> estado = new AtomicReference<>();
+
+    private ReservaRepositorio reservaRepositorio;
+    private JdbcTemplate jdbcTemplate;
+    private OcupacionCanchasIndice ocupacionIndice;
+    private EstadisticasRollupServicio rollupEstadisticas;
+    private ReservaServicio reservaServicio;
+
+    @BeforeEach
+    void setUp() {
+        reservaRepositorio = mock(ReservaRepositorio.class);
+        when(reservaRepositorio.findEstadoPagoPorId(7L)).thenAnswer(inv -> Optional.of(estado.get()));
+        when(reservaRepositorio.actualizarPago(anyLong(), anyString(), anyString(), any(), any(), any(), any())).thenAnswer(inv -> {
+            ReservaRepositorio.EstadoPago actual = estado.get();
+            if (!actual.getEstado().equals(inv.getArgument(1))) {
+                return 0;
+            }
+            estado.set(reserva(inv.getArgument(2), inv.getArgument(3), inv.getArgument(4), inv.getArgument(5), inv.getArgument(6)));
+            return 1;
+        });
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+        ocupacionIndice = mock(OcupacionCanchasIndice.class);
+        rollupEstadisticas = mock(EstadisticasRollupServicio.class);
+
+        reservaServicio = new ReservaServicio();
+        ReflectionTestUtils.setField(reservaServicio, "reservaRepositorio", reservaRepositorio);
+        ReflectionTestUtils.setField(reservaServicio, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(reservaServicio, "ocupacionIndice", ocupacionIndice);
+        ReflectionTestUtils.setField(reservaServicio, "rollupEstadisticas", rollupEstadisticas);
+    }
+
+    @Test
+    void unaReservaCanceladaNoSeReactivaConPagosPosteriores() {
+        // Retención vencida antes de que Mercado Pago informara el ticket.
+        estado.set(reserva("cancelada", false, "mercadopago", null, null));
+
+        assertTrue(reservaServicio.aplicarPagoMercadoPago("7", "99", "pending"));
+        assertEquals("cancelada", estado.get().getEstado());
+        assertEquals("99", estado.get().getMercadoPagoPaymentId());
+        assertFalse(Boolean.TRUE.equals(estado.get().getPagoADevolver()));
+
+        assertTrue(reservaServicio.aplicarPagoMercadoPago("7", "99", "approved"));
+        assertEquals("cancelada", estado.get().getEstado());
+        assertEquals(false, estado.get().getPagada());
+        assertEquals("MercadoPago", estado.get().getMetodoPago());
+        assertEquals(true, estado.get().getPagoADevolver());
+
+        // Un webhook repetido ya no cambia nada.
+        assertFalse(reservaServicio.aplicarPagoMercadoPago("7", "99", "approved"));
+
+        verify(ocupacionIndice, never()).registrar(anyLong(), anyLong(), any(), any(), any(),
+                argThat(estadoNuevo -> EstadoReserva.ocupaCancha(estadoNuevo)));
+        verify(rollupEstadisticas, never()).registrarCambio(any(EstadisticasRollupServicio.Huella.class),
+                any(EstadisticasRollupServicio.Huella.class));
+    }
+
+    @Test
+    void laConciliacionRegistraElPagoSinReactivarLaReservaCancelada() {
+        ReservaRepositorio.EstadoPago cancelada = reserva("cancelada", false, "mercadopago", null, null);
+
+        assertEquals(1, reservaServicio.aplicarPagosConciliados(List.of(new ReservaServicio.PagoConciliado(cancelada, "99", "in_process"))));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> filas = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), filas.capture());
+        assertArrayEquals(new Object[]{"cancelada", false, "MercadoPago", "99", null, 7L, "cancelada"}, filas.getValue().get(0));
+        verify(ocupacionIndice, never()).registrar(anyLong(), anyLong(), any(), any(), any(), any());
+    }
+
+    private static ReservaRepositorio.EstadoPago reserva(String estado, Boolean pagada, String metodoPago, String paymentId,
+                                                         Boolean pagoADevolver) {
+        return new EstadoPagoReserva(7L, estado, pagada, metodoPago, paymentId, 10L, "Futbol 5", "Futbol 5 - Cancha 1",
+                TURNO, new BigDecimal("20000"), pagoADevolver);
+    }
+
+    private record EstadoPagoReserva(Long getId, String getEstado, Boolean getPagada, String getMetodoPago,
+                                     String getMercadoPagoPaymentId, Long getComplejoId, String getTipoCancha,
+                                     String getNombreCancha, LocalDateTime getFechaHora, BigDecimal getPrecio,
+                                     Boolean getPagoADevolver)
+            implements ReservaRepositorio.EstadoPago {
+    }
+}